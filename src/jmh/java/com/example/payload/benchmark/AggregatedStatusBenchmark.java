@@ -0,0 +1,47 @@
+package com.example.payload.benchmark;
+
+import com.example.payload.bhpubwrt.AggregatedPayloadStatus;
+import com.example.payload.bhpubwrt.BhpubwrtProducer;
+import com.example.payload.bhpubwrt.PayloadStatus;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// Reading the multi-cluster aggregate, which callers poll in tight loops, with and without a
+// status update between reads. Run with -prof gc to see allocation per read.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AggregatedStatusBenchmark {
+
+    @Param({"3", "16"})
+    public int clusters;
+
+    private BhpubwrtProducer producer;
+    private PayloadStatus[] statuses;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        producer = new BhpubwrtProducer();
+        statuses = new PayloadStatus[clusters];
+        for (int c = 0; c < clusters; c++) {
+            statuses[c] = new PayloadStatus("payload", true, 10, "cluster-" + (c + 1));
+            producer.onStatus(statuses[c]);
+        }
+    }
+
+    @Benchmark
+    public AggregatedPayloadStatus read() {
+        return producer.getAggregatedStatus("payload");
+    }
+
+    @Benchmark
+    public AggregatedPayloadStatus updateThenRead() {
+        producer.onStatus(statuses[next++ % clusters]);
+        return producer.getAggregatedStatus("payload");
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.payload.benchmark;
+
+import com.example.payload.common.BinaryTSValuesSerializer;
+import com.example.payload.common.GroupedTSValues;
+import com.example.payload.common.KeyDictionary;
+import com.example.payload.common.TSValues;
+import com.example.payload.common.TSValuesDeserializer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.record.CompressionType;
+import org.apache.kafka.common.record.MemoryRecords;
+import org.apache.kafka.common.record.MemoryRecordsBuilder;
+import org.apache.kafka.common.record.Record;
+import org.apache.kafka.common.record.RecordBatch;
+import org.apache.kafka.common.record.TimestampType;
+import org.apache.kafka.common.serialization.Serializer;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+// Producer codecs on payload records, through the same record batches the producer builds and
+// the consumer reads. compress and decompress isolate the codec CPU; endToEnd adds
+// serialization and decoding into GroupedTSValues. compress also reports the compression
+// ratio (uncompressed / compressed bytes) as a secondary result. source is "generated" or a file holding a TSValues[] JSON array, e.g. a captured
+// payload-topic record: -p source=/path/to/payload.json
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CompressionBenchmark {
+
+    @Param({"none", "gzip", "snappy", "lz4", "zstd"})
+    public String codec;
+
+    @Param({"json", "binary"})
+    public String format;
+
+    @Param({"generated"})
+    public String source;
+
+    private TSValues[] payload;
+    private CompressionType compression;
+    private Serializer<TSValues[]> serializer;
+    private final RecordHeaders headers = new RecordHeaders();
+    private TSValuesDeserializer deserializer;
+    private byte[] serialized;
+    private MemoryRecords compressed;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        payload = "generated".equals(source)
+                ? PayloadGenerator.generate(10_000, 100, "zipf", 42)
+                : new ObjectMapper().readValue(Files.readAllBytes(Path.of(source)), TSValues[].class);
+        compression = CompressionType.forName(codec);
+        if ("binary".equals(format)) {
+            serializer = new BinaryTSValuesSerializer();
+        } else {
+            JsonSerializer<TSValues[]> json = new JsonSerializer<>();
+            json.setAddTypeInfo(false);
+            serializer = json;
+        }
+        deserializer = new TSValuesDeserializer(new KeyDictionary());
+        serialized = serializer.serialize("payload-topic", headers, payload);
+        compressed = batch(serialized);
+    }
+
+    @Benchmark
+    public MemoryRecords compress(Ratio ratio) {
+        MemoryRecords records = batch(serialized);
+        ratio.compressionRatio = (double) serialized.length / records.sizeInBytes();
+        return records;
+    }
+
+    @Benchmark
+    public long decompress() {
+        long bytes = 0;
+        for (RecordBatch batch : compressed.batches()) {
+            for (Record record : batch) {
+                bytes += record.valueSize();
+            }
+        }
+        return bytes;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public int endToEnd() {
+        MemoryRecords records = batch(serializer.serialize("payload-topic", headers, payload));
+        int decoded = 0;
+        for (RecordBatch batch : records.batches()) {
+            for (Record record : batch) {
+                ByteBuffer value = record.value();
+                byte[] bytes = new byte[value.remaining()];
+                value.get(bytes);
+                GroupedTSValues grouped = deserializer.deserialize("payload-topic", headers, bytes);
+                decoded += grouped.recordCount();
+            }
+        }
+        return decoded;
+    }
+
+    private MemoryRecords batch(byte[] value) {
+        MemoryRecordsBuilder builder = MemoryRecords.builder(ByteBuffer.allocate(value.length / 2 + 1024),
+                compression, TimestampType.CREATE_TIME, 0L);
+        builder.append(System.currentTimeMillis(), null, value);
+        return builder.build();
+    }
+
+    // Set on every invocation, so it is the same value in each iteration rather than a sum.
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Ratio {
+        public double compressionRatio;
+    }
+}
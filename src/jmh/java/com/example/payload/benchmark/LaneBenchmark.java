@@ -0,0 +1,86 @@
+package com.example.payload.benchmark;
+
+import com.example.payload.bhwrtam.BlockingQueueLane;
+import com.example.payload.bhwrtam.RingBufferLane;
+import com.example.payload.bhwrtam.SubBatch;
+import com.example.payload.bhwrtam.SubBatchLane;
+import com.example.payload.bhwrtam.WaitStrategy;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Compares the LinkedBlockingQueue lane with the ring-buffer lane, uncontended (offer then poll
+// on one thread) and as a producer/consumer pair. In the pair, the "transferred" counter is the
+// number that matters; "missed" counts attempts that found the lane full or empty.
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LaneBenchmark {
+
+    @Param({"linked", "ring-mp", "ring-sp"})
+    public String lane;
+
+    @Param({"1024"})
+    public int capacity;
+
+    private SubBatchLane subject;
+    private final SubBatch batch = new SubBatch("payload", 0, "key", List.of());
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        subject = switch (lane) {
+            case "ring-mp" -> new RingBufferLane(capacity, false, WaitStrategy.BUSY_SPIN);
+            case "ring-sp" -> new RingBufferLane(capacity, true, WaitStrategy.BUSY_SPIN);
+            default -> new BlockingQueueLane(capacity);
+        };
+    }
+
+    @Benchmark
+    @Group("uncontended")
+    public SubBatch offerThenPoll() {
+        subject.offer(batch);
+        return subject.poll();
+    }
+
+    @Benchmark
+    @Group("pair")
+    @GroupThreads(1)
+    public void producer(Transfers transfers) {
+        if (subject.offer(batch)) {
+            transfers.transferred++;
+        } else {
+            transfers.missed++;
+        }
+    }
+
+    @Benchmark
+    @Group("pair")
+    @GroupThreads(1)
+    public void consumer(Transfers transfers, Blackhole bh) {
+        SubBatch polled = subject.poll();
+        if (polled != null) {
+            transfers.transferred++;
+            bh.consume(polled);
+        } else {
+            transfers.missed++;
+        }
+    }
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Transfers {
+        public long transferred;
+        public long missed;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            transferred = 0;
+            missed = 0;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.payload.benchmark;
+
+import com.example.payload.common.TSValues;
+
+import java.util.Random;
+
+// Synthetic payloads for the benchmarks. Skew decides how records are spread over keys:
+//   uniform - every key equally likely
+//   zipf    - Zipf(s=1.1), a long tail behind a few popular keys
+//   hot     - 90% of records on key0, the rest uniform
+final class PayloadGenerator {
+
+    private PayloadGenerator() {
+    }
+
+    static TSValues[] generate(int records, int keys, String skew, long seed) {
+        Random random = new Random(seed);
+        double[] zipfCdf = "zipf".equals(skew) ? zipfCdf(keys, 1.1) : null;
+        TSValues[] payload = new TSValues[records];
+        for (int i = 0; i < records; i++) {
+            int key = switch (skew) {
+                case "uniform" -> random.nextInt(keys);
+                case "zipf" -> sample(zipfCdf, random.nextDouble());
+                case "hot" -> random.nextDouble() < 0.9 ? 0 : random.nextInt(keys);
+                default -> throw new IllegalArgumentException("Unknown skew " + skew);
+            };
+            TSValues record = new TSValues();
+            record.key = "sensor-" + key;
+            record.value = (1_700_000_000_000L + i * 1000L) + ":" + (random.nextInt(100_000) / 100.0);
+            payload[i] = record;
+        }
+        return payload;
+    }
+
+    private static double[] zipfCdf(int keys, double exponent) {
+        double[] cdf = new double[keys];
+        double sum = 0;
+        for (int k = 0; k < keys; k++) {
+            sum += 1.0 / Math.pow(k + 1, exponent);
+            cdf[k] = sum;
+        }
+        for (int k = 0; k < keys; k++) {
+            cdf[k] /= sum;
+        }
+        return cdf;
+    }
+
+    private static int sample(double[] cdf, double u) {
+        int lo = 0;
+        int hi = cdf.length - 1;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (cdf[mid] < u) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.payload.benchmark;
+
+import com.example.payload.common.BinaryTSValuesSerializer;
+import com.example.payload.common.GroupedTSValues;
+import com.example.payload.common.KeyDictionary;
+import com.example.payload.common.TSValues;
+import com.example.payload.common.TSValuesDeserializer;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.kafka.support.serializer.JsonDeserializer;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+
+import java.util.concurrent.TimeUnit;
+
+// (De)serialization of TSValues[] payloads: the databind JSON path the consumer used to take,
+// the streaming JSON decoder and the binary format.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SerializationBenchmark {
+
+    @Param({"1000", "100000"})
+    public int records;
+
+    @Param({"10", "1000"})
+    public int keys;
+
+    @Param({"uniform", "zipf"})
+    public String skew;
+
+    private TSValues[] payload;
+    private byte[] json;
+    private byte[] binary;
+    private final RecordHeaders jsonHeaders = new RecordHeaders();
+    private final RecordHeaders binaryHeaders = new RecordHeaders();
+    private JsonSerializer<TSValues[]> jsonSerializer;
+    private JsonDeserializer<TSValues[]> databindDeserializer;
+    private BinaryTSValuesSerializer binarySerializer;
+    private TSValuesDeserializer deserializer;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        payload = PayloadGenerator.generate(records, keys, skew, 42);
+        jsonSerializer = new JsonSerializer<>();
+        jsonSerializer.setAddTypeInfo(false);
+        databindDeserializer = new JsonDeserializer<>(TSValues[].class);
+        databindDeserializer.ignoreTypeHeaders();
+        binarySerializer = new BinaryTSValuesSerializer();
+        deserializer = new TSValuesDeserializer(new KeyDictionary());
+        json = jsonSerializer.serialize("payload-topic", jsonHeaders, payload);
+        binary = binarySerializer.serialize("payload-topic", binaryHeaders, payload);
+    }
+
+    @Benchmark
+    public byte[] serializeJson() {
+        return jsonSerializer.serialize("payload-topic", payload);
+    }
+
+    @Benchmark
+    public byte[] serializeBinary() {
+        return binarySerializer.serialize("payload-topic", payload);
+    }
+
+    @Benchmark
+    public TSValues[] deserializeJsonDatabind() {
+        return databindDeserializer.deserialize("payload-topic", json);
+    }
+
+    @Benchmark
+    public GroupedTSValues deserializeJsonStreaming() {
+        return deserializer.deserialize("payload-topic", jsonHeaders, json);
+    }
+
+    @Benchmark
+    public GroupedTSValues deserializeBinary() {
+        return deserializer.deserialize("payload-topic", binaryHeaders, binary);
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.payload.benchmark;
+
+import com.example.payload.bhwrtam.StatusTracker;
+import com.example.payload.bhwrtam.SubBatchStatus;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// StatusTracker.update from several workers at once: all of them on one payload (the shared
+// counter is the contention point) or each on its own payload.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class StatusTrackerBenchmark {
+
+    private final LongAdder completed = new LongAdder();
+    final StatusTracker tracker = new StatusTracker(id -> completed.increment());
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        tracker.init("shared", Integer.MAX_VALUE);
+    }
+
+    @State(Scope.Thread)
+    public static class OwnPayload {
+        String payloadId;
+
+        @Setup(Level.Iteration)
+        public void setUp(StatusTrackerBenchmark benchmark) {
+            payloadId = "own-" + Thread.currentThread().getId();
+            benchmark.tracker.init(payloadId, Integer.MAX_VALUE);
+        }
+    }
+
+    @Benchmark
+    public void updateSharedPayload() {
+        tracker.update("shared", 0, SubBatchStatus.SUCCESS);
+    }
+
+    @Benchmark
+    public void updateOwnPayload(OwnPayload own) {
+        tracker.update(own.payloadId, 0, SubBatchStatus.SUCCESS);
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.payload.benchmark;
+
+import com.example.payload.bhwrtam.KafkaPayloadProcessor;
+import com.example.payload.common.GroupedTSValues;
+import com.example.payload.common.KeyDictionary;
+import com.example.payload.common.TSValues;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Grouping a payload by key, and the full submitLargePayload path (group, split, route and
+// hand off to running lane workers), across payload size, key cardinality and key skew.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SubmitPayloadBenchmark {
+
+    @Param({"1000", "100000"})
+    public int records;
+
+    @Param({"10", "1000"})
+    public int keys;
+
+    @Param({"uniform", "zipf", "hot"})
+    public String skew;
+
+    private List<TSValues> payload;
+    private KeyDictionary dictionary;
+    private ExecutorService workers;
+    private KafkaPayloadProcessor processor;
+    private final AtomicLong payloadSeq = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        payload = Arrays.asList(PayloadGenerator.generate(records, keys, skew, 42));
+        dictionary = new KeyDictionary();
+        workers = Executors.newFixedThreadPool(4, r -> {
+            Thread t = new Thread(r, "bench-worker");
+            t.setDaemon(true);
+            return t;
+        });
+        processor = new KafkaPayloadProcessor(workers);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        processor.shutdown();
+        workers.shutdownNow();
+    }
+
+    @Benchmark
+    public GroupedTSValues groupByKey() {
+        return GroupedTSValues.of(payload, dictionary);
+    }
+
+    @Benchmark
+    public void submitLargePayload() throws InterruptedException {
+        processor.submitLargePayload("bench-" + payloadSeq.incrementAndGet(), payload);
+    }
+}
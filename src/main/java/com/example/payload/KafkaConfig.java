@@ -1,10 +1,17 @@
 package com.example.payload;
 
 import com.example.payload.bhpubwrt.PayloadStatus;
+import com.example.payload.bhpubwrt.PayloadStatusDeserializer;
+import com.example.payload.common.GroupedTSValues;
+import com.example.payload.common.KeyDictionary;
+import com.example.payload.common.BinaryTSValuesSerializer;
 import com.example.payload.common.TSValues;
+import com.example.payload.common.TSValuesDeserializer;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
 import org.apache.kafka.clients.producer.ProducerConfig;
 import org.apache.kafka.clients.admin.NewTopic;
+import org.apache.kafka.common.record.CompressionType;
+import org.apache.kafka.common.serialization.Serializer;
 import org.apache.kafka.common.serialization.StringDeserializer;
 import org.apache.kafka.common.serialization.StringSerializer;
 import org.springframework.beans.factory.annotation.Value;
@@ -13,13 +20,16 @@ import org.springframework.context.annotation.Configuration;
 import org.springframework.kafka.annotation.EnableKafka;
 import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
 import org.springframework.kafka.core.*;
+import org.springframework.kafka.listener.ContainerProperties;
 import org.springframework.kafka.support.serializer.ErrorHandlingDeserializer;
-import org.springframework.kafka.support.serializer.JsonDeserializer;
 import org.springframework.kafka.support.serializer.JsonSerializer;
 import org.springframework.util.StringUtils;
 
 import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Properties;
 
 @EnableKafka
 @Configuration
@@ -36,6 +46,35 @@ public class KafkaConfig {
     @Value("${spring.kafka.cluster3.bootstrap-servers:}")
     private String cluster3Bootstrap;
 
+    @Value("${payload.wire.format:json}")
+    private String payloadWireFormat; // json | binary, consumers follow the content-type header
+
+    @Value("${payload.keyDictionary.maxKeys:65536}")
+    private int keyDictionaryMaxKeys;
+
+    @Value("${payload.listener.batch.maxPollRecords:500}")
+    private int batchMaxPollRecords;
+    @Value("${payload.listener.batch.pollTimeoutMs:1000}")
+    private long batchPollTimeoutMs;
+
+    // false: status consumers without a committed offset start at the log end instead of
+    // rebuilding the status store from earliest; use with payload.status.store.type=mapped.
+    @Value("${payload.status.store.replayOnStartup:true}")
+    private boolean statusReplayOnStartup = true;
+
+    // Codec for payload batches: none | gzip | snappy | lz4 | zstd. TSValues values repeat a lot,
+    // so anything but none usually pays off; CompressionBenchmark compares them on real payloads.
+    @Value("${payload.producer.compression:none}")
+    private String payloadCompression = "none";
+
+    // Status records are small and frequent; let the producer coalesce and compress them
+    @Value("${payload.status.producer.lingerMs:5}")
+    private int statusLingerMs;
+    @Value("${payload.status.producer.batchSize:65536}")
+    private int statusBatchSize;
+    @Value("${payload.status.producer.compression:lz4}")
+    private String statusCompression;
+
     @Bean
     public NewTopic payloadRequestTopic() {
         return new NewTopic(REQUEST_TOPIC, 1, (short) 1);
@@ -46,30 +85,51 @@ public class KafkaConfig {
         return new NewTopic(REPLY_TOPIC, 1, (short) 1);
     }
 
+    // Shared by the payload deserializers and KafkaPayloadProcessor so keys get one id everywhere
+    @Bean
+    public KeyDictionary keyDictionary() {
+        return new KeyDictionary(keyDictionaryMaxKeys);
+    }
+
     @Bean
-    public ConsumerFactory<String, TSValues[]> consumerFactory() {
+    public ConsumerFactory<String, GroupedTSValues> consumerFactory() {
         Map<String, Object> props = new HashMap<>();
         props.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
         props.put(ConsumerConfig.GROUP_ID_CONFIG, "payload-group");
         props.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
         props.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+        props.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false); // the listeners acknowledge
 
-        JsonDeserializer<TSValues[]> deserializer = new JsonDeserializer<>(TSValues[].class);
-        deserializer.addTrustedPackages("*");
-        deserializer.ignoreTypeHeaders(); // we don't rely on type headers for generic List
-
+        // Binary payloads are recognised by their content-type header; anything else is JSON,
+        // streamed and grouped by key while parsing (type headers are ignored)
         return new DefaultKafkaConsumerFactory<>(
             props,
             new StringDeserializer(),
-            deserializer
+            new TSValuesDeserializer(keyDictionary())
         );
     }
 
     @Bean
-    public ConcurrentKafkaListenerContainerFactory<String, TSValues[]> kafkaListenerContainerFactory() {
-        ConcurrentKafkaListenerContainerFactory<String, TSValues[]> factory =
+    public ConcurrentKafkaListenerContainerFactory<String, GroupedTSValues> kafkaListenerContainerFactory() {
+        ConcurrentKafkaListenerContainerFactory<String, GroupedTSValues> factory =
+            new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConsumerFactory(consumerFactory());
+        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL);
+        return factory;
+    }
+
+    // Used by BhwrtamBatchConsumer when payload.listener.mode=batch
+    @Bean(name = "batchKafkaListenerContainerFactory")
+    public ConcurrentKafkaListenerContainerFactory<String, GroupedTSValues> batchKafkaListenerContainerFactory() {
+        ConcurrentKafkaListenerContainerFactory<String, GroupedTSValues> factory =
             new ConcurrentKafkaListenerContainerFactory<>();
         factory.setConsumerFactory(consumerFactory());
+        factory.setBatchListener(true);
+        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL);
+        factory.getContainerProperties().setPollTimeout(batchPollTimeoutMs);
+        Properties overrides = new Properties();
+        overrides.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, String.valueOf(batchMaxPollRecords));
+        factory.getContainerProperties().setKafkaConsumerProperties(overrides);
         return factory;
     }
 
@@ -77,9 +137,11 @@ public class KafkaConfig {
     public ProducerFactory<String, TSValues[]> producerFactory() {
         Map<String, Object> props = new HashMap<>();
         props.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
-        props.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
-        props.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, JsonSerializer.class);
-        return new DefaultKafkaProducerFactory<>(props);
+        props.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, compressionType("payload.producer.compression", payloadCompression));
+        Serializer<TSValues[]> valueSerializer = "binary".equalsIgnoreCase(payloadWireFormat)
+            ? new BinaryTSValuesSerializer()
+            : new JsonSerializer<>();
+        return new DefaultKafkaProducerFactory<>(props, new StringSerializer(), valueSerializer);
     }
 
     @Bean
@@ -89,9 +151,7 @@ public class KafkaConfig {
 
     @Bean
     public ProducerFactory<String, PayloadStatus> statusProducerFactory() {
-        Map<String, Object> props = new HashMap<>();
-        props.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
-        props.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
+        Map<String, Object> props = statusProducerProps(bootstrapServers);
         props.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, JsonSerializer.class);
         return new DefaultKafkaProducerFactory<>(props);
     }
@@ -101,12 +161,38 @@ public class KafkaConfig {
         return new KafkaTemplate<>(statusProducerFactory());
     }
 
+    // Multi-status records for payload.status.publish.batched; decoded by PayloadStatusDeserializer
     @Bean
-    public ProducerFactory<String, PayloadStatus> statusProducerFactoryCluster2() {
-        if (!StringUtils.hasText(cluster2Bootstrap)) return null;
+    public ProducerFactory<String, PayloadStatus[]> statusBatchProducerFactory() {
+        return statusBatchProducerFactory(bootstrapServers);
+    }
+
+    @Bean
+    public KafkaTemplate<String, PayloadStatus[]> statusBatchKafkaTemplate() {
+        return new KafkaTemplate<>(statusBatchProducerFactory());
+    }
+
+    private ProducerFactory<String, PayloadStatus[]> statusBatchProducerFactory(String bootstrap) {
+        Map<String, Object> props = statusProducerProps(bootstrap);
+        props.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, JsonSerializer.class);
+        props.put(JsonSerializer.ADD_TYPE_INFO_HEADERS, false);
+        return new DefaultKafkaProducerFactory<>(props);
+    }
+
+    private Map<String, Object> statusProducerProps(String bootstrap) {
         Map<String, Object> props = new HashMap<>();
-        props.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, cluster2Bootstrap);
+        props.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrap);
         props.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
+        props.put(ProducerConfig.LINGER_MS_CONFIG, statusLingerMs);
+        props.put(ProducerConfig.BATCH_SIZE_CONFIG, statusBatchSize);
+        props.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, compressionType("payload.status.producer.compression", statusCompression));
+        return props;
+    }
+
+    @Bean
+    public ProducerFactory<String, PayloadStatus> statusProducerFactoryCluster2() {
+        if (!StringUtils.hasText(cluster2Bootstrap)) return null;
+        Map<String, Object> props = statusProducerProps(cluster2Bootstrap);
         props.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, JsonSerializer.class);
         return new DefaultKafkaProducerFactory<>(props);
     }
@@ -114,9 +200,7 @@ public class KafkaConfig {
     @Bean
     public ProducerFactory<String, PayloadStatus> statusProducerFactoryCluster3() {
         if (!StringUtils.hasText(cluster3Bootstrap)) return null;
-        Map<String, Object> props = new HashMap<>();
-        props.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, cluster3Bootstrap);
-        props.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
+        Map<String, Object> props = statusProducerProps(cluster3Bootstrap);
         props.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, JsonSerializer.class);
         return new DefaultKafkaProducerFactory<>(props);
     }
@@ -134,70 +218,101 @@ public class KafkaConfig {
     }
 
     @Bean
-    public ConsumerFactory<String, PayloadStatus> statusConsumerFactory() {
+    public ProducerFactory<String, PayloadStatus[]> statusBatchProducerFactoryCluster2() {
+        if (!StringUtils.hasText(cluster2Bootstrap)) return null;
+        return statusBatchProducerFactory(cluster2Bootstrap);
+    }
+
+    @Bean
+    public ProducerFactory<String, PayloadStatus[]> statusBatchProducerFactoryCluster3() {
+        if (!StringUtils.hasText(cluster3Bootstrap)) return null;
+        return statusBatchProducerFactory(cluster3Bootstrap);
+    }
+
+    @Bean
+    public KafkaTemplate<String, PayloadStatus[]> statusBatchKafkaTemplateCluster2() {
+        if (statusBatchProducerFactoryCluster2() == null) return null;
+        return new KafkaTemplate<>(statusBatchProducerFactoryCluster2());
+    }
+
+    @Bean
+    public KafkaTemplate<String, PayloadStatus[]> statusBatchKafkaTemplateCluster3() {
+        if (statusBatchProducerFactoryCluster3() == null) return null;
+        return new KafkaTemplate<>(statusBatchProducerFactoryCluster3());
+    }
+
+    @Bean
+    public ConsumerFactory<String, List<PayloadStatus>> statusConsumerFactory() {
         Map<String, Object> props = new HashMap<>();
         props.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
         props.put(ConsumerConfig.GROUP_ID_CONFIG, "payload-status-group");
         props.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
-        // Configure via properties only (no instance passed)
+        // Configure via properties only (no instance passed); one object or an array of statuses
         props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, ErrorHandlingDeserializer.class);
-        props.put(ErrorHandlingDeserializer.VALUE_DESERIALIZER_CLASS, JsonDeserializer.class.getName());
-        props.put(JsonDeserializer.TRUSTED_PACKAGES, "com.example.payload");
-        props.put(JsonDeserializer.VALUE_DEFAULT_TYPE, "com.example.payload.bhpubwrt.PayloadStatus");
-        props.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+        props.put(ErrorHandlingDeserializer.VALUE_DESERIALIZER_CLASS, PayloadStatusDeserializer.class.getName());
+        props.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, statusAutoOffsetReset());
 
         return new DefaultKafkaConsumerFactory<>(props);
     }
 
     @Bean
-    public ConsumerFactory<String, PayloadStatus> statusConsumerFactoryCluster2() {
+    public ConsumerFactory<String, List<PayloadStatus>> statusConsumerFactoryCluster2() {
         if (!StringUtils.hasText(cluster2Bootstrap)) return null;
         Map<String, Object> props = new HashMap<>();
         props.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, cluster2Bootstrap);
-        props.put(ConsumerConfig.GROUP_ID_CONFIG, "payload-status-group");
+        props.put(ConsumerConfig.GROUP_ID_CONFIG, "payload-status-group-cluster2");
         props.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
         props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, ErrorHandlingDeserializer.class);
-        props.put(ErrorHandlingDeserializer.VALUE_DESERIALIZER_CLASS, JsonDeserializer.class.getName());
-        props.put(JsonDeserializer.TRUSTED_PACKAGES, "com.example.payload");
-        props.put(JsonDeserializer.VALUE_DEFAULT_TYPE, "com.example.payload.bhpubwrt.PayloadStatus");
-        props.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+        props.put(ErrorHandlingDeserializer.VALUE_DESERIALIZER_CLASS, PayloadStatusDeserializer.class.getName());
+        props.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, statusAutoOffsetReset());
         return new DefaultKafkaConsumerFactory<>(props);
     }
 
     @Bean
-    public ConsumerFactory<String, PayloadStatus> statusConsumerFactoryCluster3() {
+    public ConsumerFactory<String, List<PayloadStatus>> statusConsumerFactoryCluster3() {
         if (!StringUtils.hasText(cluster3Bootstrap)) return null;
         Map<String, Object> props = new HashMap<>();
         props.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, cluster3Bootstrap);
-        props.put(ConsumerConfig.GROUP_ID_CONFIG, "payload-status-group");
+        props.put(ConsumerConfig.GROUP_ID_CONFIG, "payload-status-group-cluster3");
         props.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
         props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, ErrorHandlingDeserializer.class);
-        props.put(ErrorHandlingDeserializer.VALUE_DESERIALIZER_CLASS, JsonDeserializer.class.getName());
-        props.put(JsonDeserializer.TRUSTED_PACKAGES, "com.example.payload");
-        props.put(JsonDeserializer.VALUE_DEFAULT_TYPE, "com.example.payload.bhpubwrt.PayloadStatus");
-        props.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+        props.put(ErrorHandlingDeserializer.VALUE_DESERIALIZER_CLASS, PayloadStatusDeserializer.class.getName());
+        props.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, statusAutoOffsetReset());
         return new DefaultKafkaConsumerFactory<>(props);
     }
 
+    // Producers are created on first send, so an unknown codec would only fail then.
+    private static String compressionType(String property, String codec) {
+        try {
+            return CompressionType.forName(codec.trim().toLowerCase(Locale.ROOT)).name;
+        } catch (IllegalArgumentException e) {
+            throw new IllegalStateException(property + " must be one of none, gzip, snappy, lz4, zstd: " + codec);
+        }
+    }
+
+    private String statusAutoOffsetReset() {
+        return statusReplayOnStartup ? "earliest" : "latest";
+    }
+
     @Bean(name = "statusKafkaListenerContainerFactory")
-    public ConcurrentKafkaListenerContainerFactory<String, PayloadStatus> statusKafkaListenerContainerFactory() {
-        ConcurrentKafkaListenerContainerFactory<String, PayloadStatus> factory = new ConcurrentKafkaListenerContainerFactory<>();
+    public ConcurrentKafkaListenerContainerFactory<String, List<PayloadStatus>> statusKafkaListenerContainerFactory() {
+        ConcurrentKafkaListenerContainerFactory<String, List<PayloadStatus>> factory = new ConcurrentKafkaListenerContainerFactory<>();
         factory.setConsumerFactory(statusConsumerFactory());
         return factory;
     }
 
     @Bean(name = "statusKafkaListenerContainerFactoryCluster2")
-    public ConcurrentKafkaListenerContainerFactory<String, PayloadStatus> statusKafkaListenerContainerFactoryCluster2() {
+    public ConcurrentKafkaListenerContainerFactory<String, List<PayloadStatus>> statusKafkaListenerContainerFactoryCluster2() {
         if (statusConsumerFactoryCluster2() == null) return null;
-        ConcurrentKafkaListenerContainerFactory<String, PayloadStatus> factory = new ConcurrentKafkaListenerContainerFactory<>();
+        ConcurrentKafkaListenerContainerFactory<String, List<PayloadStatus>> factory = new ConcurrentKafkaListenerContainerFactory<>();
         factory.setConsumerFactory(statusConsumerFactoryCluster2());
         return factory;
     }
 
     @Bean(name = "statusKafkaListenerContainerFactoryCluster3")
-    public ConcurrentKafkaListenerContainerFactory<String, PayloadStatus> statusKafkaListenerContainerFactoryCluster3() {
+    public ConcurrentKafkaListenerContainerFactory<String, List<PayloadStatus>> statusKafkaListenerContainerFactoryCluster3() {
         if (statusConsumerFactoryCluster3() == null) return null;
-        ConcurrentKafkaListenerContainerFactory<String, PayloadStatus> factory = new ConcurrentKafkaListenerContainerFactory<>();
+        ConcurrentKafkaListenerContainerFactory<String, List<PayloadStatus>> factory = new ConcurrentKafkaListenerContainerFactory<>();
         factory.setConsumerFactory(statusConsumerFactoryCluster3());
         return factory;
     }
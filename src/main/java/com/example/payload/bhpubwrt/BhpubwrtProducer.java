@@ -1,14 +1,31 @@
 package com.example.payload.bhpubwrt;
 
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.apache.kafka.clients.producer.ProducerRecord;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Component;
 
+import com.example.payload.common.BoundedStore;
+import com.example.payload.common.PayloadChunks;
 import com.example.payload.common.TSValues;
 
 @Component
@@ -23,21 +40,228 @@ public class BhpubwrtProducer {
 	@Autowired
 	private org.springframework.kafka.core.KafkaTemplate<String, PayloadStatus> statusKafkaTemplate;
 
+	@Autowired(required = false)
+	private KafkaTemplate<String, PayloadStatus[]> statusBatchKafkaTemplate;
+
+	// Set when spring.kafka.cluster2/3.bootstrap-servers are configured; statuses are then
+	// published to every cluster and consumed back from each of them
+	@Autowired(required = false)
+	private KafkaTemplate<String, PayloadStatus> statusKafkaTemplateCluster2;
+	@Autowired(required = false)
+	private KafkaTemplate<String, PayloadStatus[]> statusBatchKafkaTemplateCluster2;
+	@Autowired(required = false)
+	private KafkaTemplate<String, PayloadStatus> statusKafkaTemplateCluster3;
+	@Autowired(required = false)
+	private KafkaTemplate<String, PayloadStatus[]> statusBatchKafkaTemplateCluster3;
+
+	@Value("${payload.status.publish.maxQueued:10000}")
+	private int maxQueuedPerCluster = 10000;
+	// A secondary cluster's full queue is waited on this long, then its statuses are dropped;
+	// the primary's is waited on until there is room.
+	@Value("${payload.status.publish.secondaryMaxWaitMs:50}")
+	private long secondaryMaxWaitMs = 50;
+	@Value("${payload.status.publish.drainTimeoutMs:5000}")
+	private long publishDrainTimeoutMs = 5000;
+	private volatile List<ClusterStatusSender> senders;
+
+	// Batched mode: each completion batch goes out as one multi-status record
+	@Value("${payload.status.publish.batched:false}")
+	private boolean batchedStatuses;
+	@Value("${payload.status.publish.maxPerRecord:256}")
+	private int maxStatusesPerRecord = 256;
+
+	@Value("${payload.send.chunkRecords:0}")
+	private int chunkRecords = 0; // 0 = every payload in one record
+
 	@Value("${spring.kafka.reply.clusters:3}")
 	private int expectedClusterReplies;
 
-	// status templates from other clusters not used for sending; replies will
-	// arrive via consumers
+	@Value("${payload.state.maxEntries:100000}")
+	private int maxAggregations = 100000;
+	@Value("${payload.state.ttlMs:600000}")
+	private long aggregationTtlMs = 600000;
+
+	// Replaced in registerMetrics once the bounds are injected; the default keeps directly
+	// constructed instances usable.
+	private BoundedStore<String, ClusterStatusAggregator> multiClusterStatus = newAggregations();
+
+	@Value("${payload.status.maxPendingCompletions:10000}")
+	private int maxPendingCompletions = 10000;
+	private final AtomicInteger pendingCompletions = new AtomicInteger();
+	private final ScheduledThreadPoolExecutor completionTimeouts = newTimeoutScheduler();
+
+	@Autowired(required = false)
+	private MeterRegistry meterRegistry;
+	private final ConcurrentMap<String, Counter> statusesPublished = new ConcurrentHashMap<>();
 
-	private final ConcurrentMap<String, ClusterStatusAggregator> multiClusterStatus = new ConcurrentHashMap<>();
+	@PostConstruct
+	void registerMetrics() {
+		multiClusterStatus = newAggregations().registerMetrics(registry(), "status-aggregations");
+		Gauge.builder("payload.status.aggregations", multiClusterStatus, BoundedStore::size)
+				.description("Payloads with multi-cluster status being aggregated")
+				.register(registry());
+		Gauge.builder("payload.status.pending", pendingCompletions, AtomicInteger::get)
+				.description("sendAsync futures waiting for cluster replies")
+				.register(registry());
+	}
+
+	@PreDestroy
+	void shutdown() {
+		completionTimeouts.shutdownNow();
+		List<ClusterStatusSender> current = senders;
+		if (current != null) {
+			current.forEach(sender -> sender.close(publishDrainTimeoutMs));
+		}
+	}
+
+	// Built on first use so directly constructed instances pick up whatever templates were set.
+	private List<ClusterStatusSender> senders() {
+		List<ClusterStatusSender> current = senders;
+		if (current == null) {
+			synchronized (this) {
+				current = senders;
+				if (current == null) {
+					List<ClusterStatusSender> created = new ArrayList<>(3);
+					created.add(new ClusterStatusSender("primary", statusKafkaTemplate, statusBatchKafkaTemplate, maxQueuedPerCluster, -1, registry()));
+					if (statusKafkaTemplateCluster2 != null) {
+						created.add(new ClusterStatusSender("cluster2", statusKafkaTemplateCluster2, statusBatchKafkaTemplateCluster2, maxQueuedPerCluster, secondaryMaxWaitMs, registry()));
+					}
+					if (statusKafkaTemplateCluster3 != null) {
+						created.add(new ClusterStatusSender("cluster3", statusKafkaTemplateCluster3, statusBatchKafkaTemplateCluster3, maxQueuedPerCluster, secondaryMaxWaitMs, registry()));
+					}
+					senders = current = List.copyOf(created);
+				}
+			}
+		}
+		return current;
+	}
+
+	// An evicted aggregate can no longer complete, so its waiters get what has arrived so far.
+	private BoundedStore<String, ClusterStatusAggregator> newAggregations() {
+		return new BoundedStore<>(maxAggregations, Duration.ofMillis(aggregationTtlMs),
+				(payloadId, agg, cause) -> agg.release());
+	}
 
+	private static ScheduledThreadPoolExecutor newTimeoutScheduler() {
+		ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, r -> {
+			Thread t = new Thread(r, "status-completion-timeouts");
+			t.setDaemon(true);
+			return t;
+		});
+		scheduler.setRemoveOnCancelPolicy(true); // cancelled timeouts must not pile up in the queue
+		return scheduler;
+	}
+
+	// The aggregation is registered before anything is sent, so no reply can arrive first.
 	public void send(String key, List<TSValues> records) {
-		kafkaTemplate.send(REQUEST_TOPIC, key, records.toArray(new TSValues[0]));
-		multiClusterStatus.computeIfAbsent(key, id -> new ClusterStatusAggregator(expectedClusterReplies));
+		startAggregation(key);
+		publish(key, records);
+	}
+
+	// Every send of a key waits for fresh replies: a previous aggregate, complete or not, is
+	// replaced in one step, and anyone still waiting on it gets what it had.
+	private ClusterStatusAggregator startAggregation(String key) {
+		ClusterStatusAggregator agg = new ClusterStatusAggregator(expectedClusterReplies);
+		ClusterStatusAggregator previous = multiClusterStatus.replace(key, agg);
+		if (previous != null) {
+			previous.release();
+		}
+		return agg;
+	}
+
+	// With payload.send.chunkRecords set, a larger payload is split into sequence-numbered
+	// records under the same key (see PayloadChunks), so no single record has to hold all of
+	// it; the consumer starts processing each chunk as it arrives. Completes once every
+	// record has been sent.
+	private CompletableFuture<?> publish(String key, List<TSValues> records) {
+		if (chunkRecords <= 0 || records.size() <= chunkRecords) {
+			return kafkaTemplate.send(REQUEST_TOPIC, key, records.toArray(new TSValues[0]));
+		}
+		int count = (records.size() + chunkRecords - 1) / chunkRecords;
+		CompletableFuture<?>[] sent = new CompletableFuture<?>[count];
+		for (int seq = 0; seq < count; seq++) {
+			List<TSValues> chunk = records.subList(seq * chunkRecords, Math.min((seq + 1) * chunkRecords, records.size()));
+			ProducerRecord<String, TSValues[]> record = new ProducerRecord<>(REQUEST_TOPIC, key, chunk.toArray(new TSValues[0]));
+			PayloadChunks.mark(record.headers(), seq, count);
+			sent[seq] = kafkaTemplate.send(record);
+		}
+		return CompletableFuture.allOf(sent);
+	}
+
+	// Sends the payload and completes once every expected cluster has replied, or after timeout
+	// with the partial aggregate (check allClustersReported). The future completes on a status
+	// listener thread; use the *Async stages for anything slow. At most
+	// payload.status.maxPendingCompletions calls wait at once; beyond that the future fails with
+	// RejectedExecutionException and nothing is sent.
+	public CompletableFuture<AggregatedPayloadStatus> sendAsync(String key, List<TSValues> records, Duration timeout) {
+		if (pendingCompletions.incrementAndGet() > maxPendingCompletions) {
+			pendingCompletions.decrementAndGet();
+			return CompletableFuture.failedFuture(new RejectedExecutionException(
+					"Too many payloads awaiting cluster replies: " + maxPendingCompletions));
+		}
+		ClusterStatusAggregator agg = startAggregation(key);
+		// The waiter belongs to this send alone; the timeout releases it with the partial
+		// aggregate, which also detaches it from the aggregator.
+		CompletableFuture<AggregatedPayloadStatus> result = agg.awaitAll();
+		ScheduledFuture<?> timer = completionTimeouts.schedule(agg::release, timeout.toNanos(), TimeUnit.NANOSECONDS);
+		try {
+			publish(key, records)
+					.whenComplete((sent, error) -> {
+						if (error != null) {
+							result.completeExceptionally(error);
+						}
+					});
+		} catch (RuntimeException e) {
+			result.completeExceptionally(e);
+		}
+		// Callers see completion only after the slot is released.
+		return result.whenComplete((status, error) -> {
+			timer.cancel(false);
+			pendingCompletions.decrementAndGet();
+		});
 	}
 
-	public void sendStatus(PayloadStatus status) {
-		statusKafkaTemplate.send(REPLY_TOPIC, status.payloadId, status);
+	public int getPendingCompletions() {
+		return pendingCompletions.get();
+	}
+
+	public CompletableFuture<Void> sendStatus(PayloadStatus status) {
+		return sendStatuses(List.of(status));
+	}
+
+	private void countPublished(PayloadStatus status) {
+		statusesPublished.computeIfAbsent(status.clusterId == null ? "cluster-unknown" : status.clusterId,
+				cluster -> Counter.builder("payload.status.published").tag("cluster", cluster).register(registry()))
+				.increment();
+	}
+
+	// Hands the batch to every cluster's publisher and returns; each cluster sends on its own
+	// thread, so a slow or unreachable cluster delays only its own statuses. Once a cluster's
+	// queue of payload.status.publish.maxQueued batches is full, this call waits for room if it
+	// is the primary; a secondary's statuses are dropped and counted after
+	// payload.status.publish.secondaryMaxWaitMs, so it cannot stall the others. Within a
+	// cluster the records go to the producer back to back and share producer batches. In
+	// batched mode the batch (already coalesced over payload.completion.maxBatchWindowMs)
+	// becomes one JSON array record per payload.status.publish.maxPerRecord statuses.
+	// The future follows the primary cluster, whose topic the status consumers read: it
+	// completes once the primary has acknowledged every status, or exceptionally if it has not.
+	// The other clusters' failures are counted and logged.
+	public CompletableFuture<Void> sendStatuses(List<PayloadStatus> statuses) {
+		if (statuses.isEmpty()) {
+			return CompletableFuture.completedFuture(null);
+		}
+		List<PayloadStatus> published = List.copyOf(statuses); // read later on the publishing threads
+		CompletableFuture<Void> primary = null;
+		for (ClusterStatusSender sender : senders()) {
+			CompletableFuture<Void> sent = sender.publish(published, batchedStatuses, maxStatusesPerRecord);
+			if (primary == null) {
+				primary = sent;
+			}
+		}
+		for (PayloadStatus status : statuses) {
+			countPublished(status);
+		}
+		return primary;
 	}
 
 	// Called by status consumers when each cluster replies
@@ -49,4 +273,8 @@ public class BhpubwrtProducer {
 		ClusterStatusAggregator agg = multiClusterStatus.get(payloadId);
 		return agg == null ? null : agg.toAggregated();
 	}
+
+	private MeterRegistry registry() {
+		return meterRegistry == null ? Metrics.globalRegistry : meterRegistry;
+	}
 }
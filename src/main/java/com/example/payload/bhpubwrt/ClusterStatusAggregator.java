@@ -1,25 +1,115 @@
 package com.example.payload.bhpubwrt;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+// Keeps the latest status per cluster as flat slots plus bitmasks, and republishes an
+// immutable AggregatedPayloadStatus only when an add changes it. Reads return that snapshot
+// as is. Replies arrive from several listener threads, so add is synchronized; reads are not.
 class ClusterStatusAggregator {
+    private static final int MAX_CLUSTERS = Long.SIZE;
+
     private final int expected;
-    private final java.util.Map<String, PayloadStatus> byCluster = new java.util.concurrent.ConcurrentHashMap<>();
+    private String[] clusters = new String[4];
+    private int[] batchCounts = new int[4];
+    private int slots;
+    private long succeeded; // bit per slot
+    private volatile AggregatedPayloadStatus snapshot;
+    private CompletableFuture<AggregatedPayloadStatus> waiter; // completed once all clusters reported
 
     ClusterStatusAggregator(int expected) {
         this.expected = expected;
+        this.snapshot = new AggregatedPayloadStatus(expected <= 0, expected <= 0, false, 0, 0, Collections.emptySet());
     }
 
     void add(PayloadStatus s) {
-        // replace existing to reflect latest status (e.g., failure after provisional success)
-        byCluster.put(s.clusterId, s);
+        CompletableFuture<AggregatedPayloadStatus> done = null;
+        synchronized (this) {
+            // replace existing to reflect latest status (e.g., failure after provisional success)
+            int slot = slotOf(s.clusterId);
+            long bit = 1L << slot;
+            boolean isNew = slot == slots;
+            if (isNew) {
+                slots++;
+            } else if (((succeeded & bit) != 0) == s.success && batchCounts[slot] == s.batchCount) {
+                return; // same as the reply already counted
+            }
+            succeeded = s.success ? succeeded | bit : succeeded & ~bit;
+            batchCounts[slot] = s.batchCount;
+            publish(isNew);
+            if (waiter != null && snapshot.allClustersReported) {
+                done = waiter;
+                waiter = null;
+            }
+        }
+        if (done != null) {
+            done.complete(snapshot); // outside the lock: dependents run on this thread
+        }
     }
 
     AggregatedPayloadStatus toAggregated() {
-        java.util.Collection<PayloadStatus> received = byCluster.values();
-        boolean allReceived = received.size() >= expected;
-        boolean allSuccess = allReceived && received.stream().allMatch(r -> r.success);
-        boolean anySuccess = received.stream().anyMatch(r -> r.success);
-        int batchCount = received.stream().map(r -> r.batchCount).max(Integer::compareTo).orElse(0);
-        java.util.Set<String> clusters = new java.util.HashSet<>(byCluster.keySet());
-        return new AggregatedPayloadStatus(allReceived, allSuccess, anySuccess, batchCount, received.size(), clusters);
+        return snapshot;
+    }
+
+    // Future completed once all clusters have reported, or by release; already complete if
+    // they have. Each send starts its own aggregator, so it has a single waiter.
+    synchronized CompletableFuture<AggregatedPayloadStatus> awaitAll() {
+        if (snapshot.allClustersReported) {
+            return CompletableFuture.completedFuture(snapshot);
+        }
+        if (waiter == null) {
+            waiter = new CompletableFuture<>();
+        }
+        return waiter;
+    }
+
+    // Completes a pending waiter with whatever has arrived and detaches it; called on timeout,
+    // when the aggregate is evicted and when a new send of the payload replaces it.
+    void release() {
+        CompletableFuture<AggregatedPayloadStatus> pending;
+        synchronized (this) {
+            pending = waiter;
+            waiter = null;
+        }
+        if (pending != null) {
+            pending.complete(snapshot);
+        }
+    }
+
+    private int slotOf(String clusterId) {
+        for (int i = 0; i < slots; i++) {
+            if (Objects.equals(clusters[i], clusterId)) {
+                return i;
+            }
+        }
+        if (slots == MAX_CLUSTERS) {
+            throw new IllegalStateException("More than " + MAX_CLUSTERS + " clusters reported a payload");
+        }
+        if (slots == clusters.length) {
+            clusters = Arrays.copyOf(clusters, slots * 2);
+            batchCounts = Arrays.copyOf(batchCounts, slots * 2);
+        }
+        clusters[slots] = clusterId;
+        return slots;
+    }
+
+    private void publish(boolean clustersChanged) {
+        int maxBatchCount = 0;
+        for (int i = 0; i < slots; i++) {
+            maxBatchCount = Math.max(maxBatchCount, batchCounts[i]);
+        }
+        boolean allReceived = slots >= expected;
+        boolean allSuccess = allReceived && Long.bitCount(succeeded) == slots;
+        Set<String> clusterIds = snapshot.clusterIds;
+        if (clustersChanged) {
+            Set<String> ids = new LinkedHashSet<>(slots * 2);
+            ids.addAll(Arrays.asList(clusters).subList(0, slots));
+            clusterIds = Collections.unmodifiableSet(ids);
+        }
+        snapshot = new AggregatedPayloadStatus(allReceived, allSuccess, succeeded != 0, maxBatchCount, slots, clusterIds);
     }
 }
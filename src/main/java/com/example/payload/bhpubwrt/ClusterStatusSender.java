@@ -0,0 +1,186 @@
+package com.example.payload.bhpubwrt;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+// Publishes statuses to the payload-status topic of one cluster. Each cluster has its own
+// single publishing thread, so a cluster whose producer blocks (metadata unavailable, buffer
+// full until max.block.ms) only backs up its own queue; the others keep sending. Order is
+// kept per cluster. Once maxQueued publications are waiting, publish waits up to maxWaitMs for
+// room and then drops the statuses for this cluster, counting them. A negative maxWaitMs waits
+// for as long as it takes: the primary cluster's acknowledgement gates the offset commits, so
+// it slows the completion path rather than losing statuses, while a secondary that stays
+// behind must not hold up the others.
+class ClusterStatusSender {
+    private static final Logger log = LoggerFactory.getLogger(ClusterStatusSender.class);
+    private static final String REPLY_TOPIC = "payload-status";
+    private static final long WAIT_STEP_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final long DROP_WARNING_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    private final String target;
+    private final KafkaTemplate<String, PayloadStatus> template;
+    private final KafkaTemplate<String, PayloadStatus[]> batchTemplate; // null: always per status
+    private final ThreadPoolExecutor executor;
+    private final Timer latency;
+    private final Counter failures;
+    private final Counter dropped;
+    private final long maxWaitNanos;
+    private final AtomicLong droppedSinceWarning = new AtomicLong();
+    private final AtomicLong lastWarningNanos = new AtomicLong(System.nanoTime() - DROP_WARNING_INTERVAL_NANOS);
+
+    ClusterStatusSender(String target, KafkaTemplate<String, PayloadStatus> template,
+                        KafkaTemplate<String, PayloadStatus[]> batchTemplate, int maxQueued, long maxWaitMs,
+                        MeterRegistry registry) {
+        this.target = target;
+        this.template = template;
+        this.batchTemplate = batchTemplate;
+        this.maxWaitNanos = maxWaitMs < 0 ? -1 : TimeUnit.MILLISECONDS.toNanos(maxWaitMs);
+        this.executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(maxQueued), r -> {
+            Thread t = new Thread(r, "status-publisher-" + target);
+            t.setDaemon(true);
+            return t;
+        }, this::waitForRoom);
+        this.latency = Timer.builder("payload.status.send.latency")
+                .description("Status hand-off until the cluster acknowledged the record")
+                .tag("target", target)
+                .register(registry);
+        this.failures = Counter.builder("payload.status.send.failures").tag("target", target).register(registry);
+        this.dropped = Counter.builder("payload.status.send.dropped")
+                .description("Statuses not published because the cluster's queue stayed full")
+                .tag("target", target)
+                .register(registry);
+        Gauge.builder("payload.status.send.queued", executor, e -> e.getQueue().size())
+                .description("Status publications waiting for the cluster's publishing thread")
+                .tag("target", target)
+                .register(registry);
+    }
+
+    String target() {
+        return target;
+    }
+
+    // Returns once the statuses are queued; they stay together and in order. The future
+    // completes when the cluster has acknowledged every one of them, or exceptionally if any
+    // send fails.
+    CompletableFuture<Void> publish(List<PayloadStatus> statuses, boolean batched, int maxPerRecord) {
+        long handedOff = System.nanoTime();
+        CompletableFuture<Void> published = new CompletableFuture<>();
+        try {
+            executor.execute(() -> send(statuses, batched, maxPerRecord, handedOff)
+                    .whenComplete((result, error) -> {
+                        if (error != null) {
+                            published.completeExceptionally(error);
+                        } else {
+                            published.complete(null);
+                        }
+                    }));
+        } catch (RejectedExecutionException e) {
+            if (e instanceof QueueFullException) {
+                dropped(statuses.size());
+            } else {
+                failures.increment(statuses.size());
+            }
+            published.completeExceptionally(e);
+        }
+        return published;
+    }
+
+    // Backpressure instead of the default abort policy: the caller waits for queue room, for at
+    // most maxWaitNanos unless that is negative.
+    private void waitForRoom(Runnable task, ThreadPoolExecutor executor) {
+        long deadline = System.nanoTime() + maxWaitNanos;
+        try {
+            while (!executor.isShutdown()) {
+                long wait = maxWaitNanos < 0 ? WAIT_STEP_NANOS : Math.min(WAIT_STEP_NANOS, deadline - System.nanoTime());
+                if (wait <= 0) {
+                    throw new QueueFullException(target);
+                }
+                if (executor.getQueue().offer(task, wait, TimeUnit.NANOSECONDS)) {
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        throw new RejectedExecutionException("Status publisher is shut down or the caller was interrupted");
+    }
+
+    // Counted every time; logged at most once per interval with the count since the last warning.
+    private void dropped(int count) {
+        dropped.increment(count);
+        long total = droppedSinceWarning.addAndGet(count);
+        long last = lastWarningNanos.get();
+        long now = System.nanoTime();
+        if (now - last >= DROP_WARNING_INTERVAL_NANOS && lastWarningNanos.compareAndSet(last, now)) {
+            droppedSinceWarning.addAndGet(-total);
+            log.warn("Status queue for {} stayed full, dropped {} statuses", target, total);
+        }
+    }
+
+    private CompletableFuture<Void> send(List<PayloadStatus> statuses, boolean batched, int maxPerRecord, long handedOff) {
+        List<CompletableFuture<?>> sent = new ArrayList<>();
+        if (!batched || batchTemplate == null || statuses.size() == 1) {
+            for (PayloadStatus status : statuses) {
+                sent.add(send(() -> template.send(REPLY_TOPIC, status.payloadId, status), 1, handedOff));
+            }
+        } else {
+            for (int from = 0; from < statuses.size(); from += maxPerRecord) {
+                PayloadStatus[] chunk = statuses.subList(from, Math.min(from + maxPerRecord, statuses.size()))
+                        .toArray(new PayloadStatus[0]);
+                // no key: a record carries many payloads, and the consumer keys by payloadId itself
+                sent.add(send(() -> batchTemplate.send(REPLY_TOPIC, chunk), chunk.length, handedOff));
+            }
+        }
+        return CompletableFuture.allOf(sent.toArray(new CompletableFuture<?>[0]));
+    }
+
+    private CompletableFuture<?> send(Supplier<CompletableFuture<?>> sendOne, int count, long handedOff) {
+        try {
+            return sendOne.get().whenComplete((result, error) -> {
+                latency.record(System.nanoTime() - handedOff, TimeUnit.NANOSECONDS);
+                if (error != null) {
+                    failures.increment(count);
+                    log.warn("Failed to publish {} statuses to {}", count, target, error);
+                }
+            });
+        } catch (RuntimeException e) {
+            failures.increment(count);
+            log.warn("Failed to publish {} statuses to {}", count, target, e);
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    // Lets queued statuses go out for up to timeoutMs before giving up on them.
+    void close(long timeoutMs) {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(timeoutMs, TimeUnit.MILLISECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static final class QueueFullException extends RejectedExecutionException {
+        QueueFullException(String target) {
+            super("Status queue for " + target + " is full");
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.payload.bhpubwrt;
+
+import com.example.payload.common.BoundedStore;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+
+// Default store: lost on restart, rebuilt by replaying payload-status.
+@Component
+@ConditionalOnProperty(name = "payload.status.store.type", havingValue = "memory", matchIfMissing = true)
+public class InMemoryStatusStore implements StatusStore {
+    @Value("${payload.state.maxEntries:100000}")
+    private int maxEntries = 100000;
+    @Value("${payload.state.ttlMs:600000}")
+    private long ttlMs = 600000;
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    private BoundedStore<String, PayloadStatus> statuses = new BoundedStore<>(maxEntries, Duration.ofMillis(ttlMs));
+
+    @PostConstruct
+    void init() {
+        statuses = new BoundedStore<String, PayloadStatus>(maxEntries, Duration.ofMillis(ttlMs))
+                .registerMetrics(meterRegistry == null ? Metrics.globalRegistry : meterRegistry, "statuses");
+    }
+
+    @Override
+    public void add(PayloadStatus status) {
+        statuses.put(status.payloadId, status);
+    }
+
+    @Override
+    public Map<String, PayloadStatus> getAll() {
+        return statuses.snapshot();
+    }
+
+    @Override
+    public int size() {
+        return statuses.size();
+    }
+
+    @Override
+    public PayloadStatus get(String payloadId) {
+        return statuses.get(payloadId);
+    }
+
+    @Override
+    public void clear() {
+        statuses.clear();
+    }
+}
@@ -1,39 +1,127 @@
 package com.example.payload.bhpubwrt;
 
+import com.example.payload.common.SampledLogger;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
 import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
+import org.springframework.kafka.listener.AbstractMessageListenerContainer;
+import org.springframework.kafka.listener.ConcurrentMessageListenerContainer;
+import org.springframework.kafka.listener.MessageListener;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
 @Component
-public class KafkaStatusConsumer {
+public class KafkaStatusConsumer implements SmartLifecycle {
+    private static final String REPLY_TOPIC = "payload-status";
 
     @Autowired
     private StatusStore statusStore;
     @Autowired
     private BhpubwrtProducer bhpubwrtProducer;
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+    @Autowired(required = false)
+    private ConcurrentKafkaListenerContainerFactory<String, List<PayloadStatus>> statusKafkaListenerContainerFactoryCluster2;
+    @Autowired(required = false)
+    private ConcurrentKafkaListenerContainerFactory<String, List<PayloadStatus>> statusKafkaListenerContainerFactoryCluster3;
+    private final List<ConcurrentMessageListenerContainer<String, List<PayloadStatus>>> remoteContainers = new ArrayList<>();
+    private volatile boolean running;
+    private final ConcurrentMap<String, Timer> replyLag = new ConcurrentHashMap<>();
+    @Value("${payload.log.sample.status:1.0}")
+    private double statusLogSampleRate = 1.0;
+    private SampledLogger statusLog;
+
+    @PostConstruct
+    void initLogging() {
+        statusLog = new SampledLogger("payload.status", statusLogSampleRate);
+    }
 
     @KafkaListener(topics = "payload-status", groupId = "payload-status-group-primary", containerFactory = "statusKafkaListenerContainerFactory")
-    public void listenStatusPrimary(ConsumerRecord<String, PayloadStatus> record) {
-        process(record, "cluster-1");
+    public void listenStatusPrimary(ConsumerRecord<String, List<PayloadStatus>> record) {
+        process(record);
+    }
+
+    // Statuses are published to every configured cluster, so each one is read back from its own
+    // cluster as well: a cluster that is down delays nothing, and the aggregators ignore the
+    // duplicate replies. The factories only exist when the cluster is configured, which
+    // @KafkaListener cannot express, so these containers are created here.
+    @Override
+    public void start() {
+        startRemote("cluster2", statusKafkaListenerContainerFactoryCluster2);
+        startRemote("cluster3", statusKafkaListenerContainerFactoryCluster3);
+        running = true;
+    }
+
+    private void startRemote(String cluster, ConcurrentKafkaListenerContainerFactory<String, List<PayloadStatus>> factory) {
+        if (factory == null) return;
+        ConcurrentMessageListenerContainer<String, List<PayloadStatus>> container = factory.createContainer(REPLY_TOPIC);
+        container.setBeanName("statusListener-" + cluster);
+        container.setupMessageListener((MessageListener<String, List<PayloadStatus>>) this::process);
+        container.start();
+        remoteContainers.add(container);
     }
 
-    @KafkaListener(topics = "payload-status", groupId = "payload-status-group-secondary", containerFactory = "statusKafkaListenerContainerFactory")
-    public void listenStatusSecondary(ConsumerRecord<String, PayloadStatus> record) {
-        process(record, "cluster-2");
+    @Override
+    public void stop() {
+        remoteContainers.forEach(ConcurrentMessageListenerContainer::stop);
+        remoteContainers.clear();
+        running = false;
     }
 
-    @KafkaListener(topics = "payload-status", groupId = "payload-status-group-tertiary", containerFactory = "statusKafkaListenerContainerFactory")
-    public void listenStatusTertiary(ConsumerRecord<String, PayloadStatus> record) {
-        process(record, "cluster-3");
+    @Override
+    public boolean isRunning() {
+        return running;
     }
 
-    private void process(ConsumerRecord<String, PayloadStatus> record, String clusterId) {
-        PayloadStatus status = record.value();
+    @Override
+    public int getPhase() {
+        return AbstractMessageListenerContainer.DEFAULT_PHASE; // alongside the @KafkaListener containers
+    }
+
+    // A record carries one status, or a batch from the batched publishing mode
+    private void process(ConsumerRecord<String, List<PayloadStatus>> record) {
+        List<PayloadStatus> statuses = record.value();
+        if (statuses == null) return; // tombstone
         // Do not override status.clusterId; keep origin cluster set by producer
-        statusStore.add(status);
-        bhpubwrtProducer.onStatus(status);
-        System.out.printf("[STATUS] cluster=%s payloadId=%s success=%s batchCount=%d completedAt=%d%n",
-                status.clusterId, status.payloadId, status.success, status.batchCount, status.completedAt);
+        statusStore.addAll(statuses);
+        for (PayloadStatus status : statuses) {
+            bhpubwrtProducer.onStatus(status);
+            recordReplyLag(status);
+            logStatus(status);
+        }
+    }
+
+    private void logStatus(PayloadStatus status) {
+        statusLog.atInfo().setMessage("Status received")
+                .addKeyValue("cluster", status.clusterId)
+                .addKeyValue("payloadId", status.payloadId)
+                .addKeyValue("success", status.success)
+                .addKeyValue("batchCount", status.batchCount)
+                .addKeyValue("completedAt", status.completedAt)
+                .log();
+    }
+
+    // Time from payload completion on the processing side until the status is consumed here.
+    private void recordReplyLag(PayloadStatus status) {
+        if (status.completedAt <= 0) return;
+        MeterRegistry registry = meterRegistry == null ? Metrics.globalRegistry : meterRegistry;
+        String cluster = status.clusterId == null ? "cluster-unknown" : status.clusterId;
+        replyLag.computeIfAbsent(cluster, c -> Timer.builder("payload.status.reply.lag")
+                        .description("Payload completion to status consumption")
+                        .tag("cluster", c)
+                        .register(registry))
+                .record(Math.max(0, System.currentTimeMillis() - status.completedAt), TimeUnit.MILLISECONDS);
     }
 }
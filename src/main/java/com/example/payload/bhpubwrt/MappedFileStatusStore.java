@@ -0,0 +1,469 @@
+package com.example.payload.bhpubwrt;
+
+import com.example.payload.common.BoundedStore;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+// Persistent store: every status is appended to a memory-mapped log (status.log) and the
+// latest offset per payload id is kept in memory. The id -> offset index is checkpointed to
+// status.idx, so a restart loads the index and scans only the log written after the last
+// checkpoint instead of replaying payload-status from Kafka. Compaction rewrites the log with
+// one record per retained id once superseded records outnumber live ones.
+//
+// Log:    magic(4) generation(8) reserved(4), then records: length(4) crc32(4) body(length);
+//         a zero length marks the end. Torn or corrupt tails are dropped on open.
+// Index:  magic(4) generation(8) logEnd(8) count(4), then per id: utf(id) offset(4) storedAt(8),
+//         storedAt being epoch millis of the id's first store, so its ttl survives a restart.
+@Component
+@ConditionalOnProperty(name = "payload.status.store.type", havingValue = "mapped")
+public class MappedFileStatusStore implements StatusStore {
+    private static final Logger log = LoggerFactory.getLogger(MappedFileStatusStore.class);
+    private static final int LOG_MAGIC = 0x50534c47; // PSLG
+    private static final int INDEX_MAGIC = 0x50534932; // PSI2; older PSIX checkpoints are rebuilt from the log
+    private static final int HEADER_BYTES = 16;
+    private static final int RECORD_HEADER_BYTES = 8;
+    private static final int MIN_MAPPED_BYTES = 1 << 20;
+    // Compact once the log holds this many records more than there are live ids.
+    private static final int MIN_GARBAGE_RECORDS = 1024;
+
+    @Value("${payload.status.store.dir:status-store}")
+    private String directory = "status-store";
+    @Value("${payload.status.store.compactIntervalMs:60000}")
+    private long compactIntervalMs = 60000;
+    @Value("${payload.state.maxEntries:100000}")
+    private int maxEntries = 100000;
+    @Value("${payload.state.ttlMs:600000}")
+    private long ttlMs = 600000;
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final CRC32 crc = new CRC32(); // guarded by the write lock
+    private Path logPath;
+    private Path indexPath;
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private long generation;
+    private int writePosition;
+    private int logRecords; // records in the log, live or superseded
+    private BoundedStore<String, Integer> index;
+    private ScheduledExecutorService maintenance;
+
+    public MappedFileStatusStore() {
+        // configured through @Value, opened in @PostConstruct
+    }
+
+    // For tests and tools; call open() before use. A compactIntervalMs of 0 turns off the
+    // background checkpoint and compaction.
+    public MappedFileStatusStore(Path directory, int maxEntries, Duration ttl, long compactIntervalMs) {
+        this.directory = directory.toString();
+        this.maxEntries = maxEntries;
+        this.ttlMs = ttl.toMillis();
+        this.compactIntervalMs = compactIntervalMs;
+    }
+
+    @PostConstruct
+    public void open() {
+        lock.writeLock().lock();
+        try {
+            Path dir = Paths.get(directory);
+            Files.createDirectories(dir);
+            logPath = dir.resolve("status.log");
+            indexPath = dir.resolve("status.idx");
+            index = new BoundedStore<>(maxEntries, Duration.ofMillis(ttlMs));
+            mapLog();
+            long start = System.nanoTime();
+            int from = loadIndex();
+            int scanned = scan(from);
+            log.info("Status store opened: {} ids, {} records scanned past the checkpoint, {} ms",
+                    index.size(), scanned, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open status store in " + directory, e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        index.registerMetrics(meterRegistry == null ? Metrics.globalRegistry : meterRegistry, "statuses");
+        if (compactIntervalMs > 0) {
+            maintenance = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "status-store-maintenance");
+                t.setDaemon(true);
+                return t;
+            });
+            maintenance.scheduleWithFixedDelay(this::maintain, compactIntervalMs, compactIntervalMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        if (maintenance != null) {
+            maintenance.shutdownNow();
+        }
+        lock.writeLock().lock();
+        try {
+            if (channel == null) {
+                return;
+            }
+            buffer.force();
+            writeIndex();
+            channel.close();
+            channel = null;
+        } catch (IOException e) {
+            log.warn("Status store checkpoint on close failed; the next open rescans the log", e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void add(PayloadStatus status) {
+        addAll(List.of(status));
+    }
+
+    // One lock acquisition per batch of statuses
+    @Override
+    public void addAll(Collection<PayloadStatus> statuses) {
+        List<byte[]> bodies = new ArrayList<>(statuses.size());
+        for (PayloadStatus status : statuses) {
+            bodies.add(encode(status));
+        }
+        lock.writeLock().lock();
+        try {
+            int i = 0;
+            for (PayloadStatus status : statuses) {
+                append(status.payloadId, bodies.get(i++));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot append to " + logPath, e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void append(String payloadId, byte[] body) throws IOException {
+        int needed = RECORD_HEADER_BYTES + body.length + 4; // plus the end marker
+        if (writePosition + needed > buffer.capacity()) {
+            remap(writePosition + needed);
+        }
+        int offset = writePosition;
+        crc.reset();
+        crc.update(body);
+        buffer.putInt(offset, body.length);
+        buffer.putInt(offset + 4, (int) crc.getValue());
+        buffer.put(offset + RECORD_HEADER_BYTES, body);
+        writePosition = offset + RECORD_HEADER_BYTES + body.length;
+        buffer.putInt(writePosition, 0);
+        logRecords++;
+        index.put(payloadId, offset);
+    }
+
+    @Override
+    public PayloadStatus get(String payloadId) {
+        lock.readLock().lock();
+        try {
+            Integer offset = index.get(payloadId);
+            return offset == null ? null : read(offset);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Map<String, PayloadStatus> getAll() {
+        lock.readLock().lock();
+        try {
+            Map<String, PayloadStatus> all = new LinkedHashMap<>();
+            index.snapshot().forEach((id, offset) -> all.put(id, read(offset)));
+            return all;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        return index.size();
+    }
+
+    @Override
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            index.clear();
+            writeHeader(System.currentTimeMillis());
+            writePosition = HEADER_BYTES;
+            buffer.putInt(writePosition, 0);
+            logRecords = 0;
+            Files.deleteIfExists(indexPath);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot clear " + indexPath, e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Rewrites the log with the latest record of every retained id, then checkpoints the index.
+    // The live log stays open until the compacted one is durable and in place, so a failure
+    // leaves the store as it was.
+    public void compact() {
+        lock.writeLock().lock();
+        try {
+            Path compacted = logPath.resolveSibling("status.log.compact");
+            long newGeneration = generation + 1;
+            Map<String, Integer> live = index.snapshot();
+            Map<String, Integer> moved = new LinkedHashMap<>();
+            int position = HEADER_BYTES;
+            FileChannel newChannel = FileChannel.open(compacted, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            MappedByteBuffer newBuffer;
+            try {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+                header.putInt(LOG_MAGIC).putLong(newGeneration).putInt(0).flip();
+                newChannel.write(header);
+                for (Map.Entry<String, Integer> entry : live.entrySet()) {
+                    int offset = entry.getValue();
+                    int length = RECORD_HEADER_BYTES + buffer.getInt(offset);
+                    ByteBuffer record = buffer.slice(offset, length);
+                    while (record.hasRemaining()) {
+                        newChannel.write(record);
+                    }
+                    moved.put(entry.getKey(), position);
+                    position += length;
+                }
+                newChannel.write(ByteBuffer.allocate(4)); // end marker
+                newChannel.force(true);
+                newBuffer = newChannel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(newChannel.size(), MIN_MAPPED_BYTES));
+                Files.move(compacted, logPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                newChannel.close();
+                Files.deleteIfExists(compacted);
+                throw e;
+            }
+            FileChannel oldChannel = channel;
+            channel = newChannel;
+            buffer = newBuffer;
+            generation = newGeneration;
+            writePosition = position;
+            // Updating in place keeps each id's eviction slot and age.
+            moved.forEach(index::put);
+            logRecords = moved.size();
+            try {
+                oldChannel.close();
+            } catch (IOException e) {
+                log.warn("Cannot close the pre-compaction status log", e);
+            }
+            writeIndex();
+            log.info("Status store compacted: {} ids, {} bytes", moved.size(), writePosition);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot compact " + logPath, e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Bytes of the log in use, header included.
+    public int logBytes() {
+        return writePosition;
+    }
+
+    private void maintain() {
+        try {
+            if (logRecords - index.size() > Math.max(index.size(), MIN_GARBAGE_RECORDS)) {
+                compact();
+                return;
+            }
+            lock.writeLock().lock();
+            try {
+                buffer.force();
+                writeIndex();
+            } finally {
+                lock.writeLock().unlock();
+            }
+        } catch (IOException | UncheckedIOException e) {
+            log.warn("Status store maintenance failed", e);
+        }
+    }
+
+    // Maps the log, creating it with a fresh header when missing.
+    private void mapLog() throws IOException {
+        boolean created = !Files.exists(logPath) || Files.size(logPath) < HEADER_BYTES;
+        channel = FileChannel.open(logPath, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long size = Math.max(channel.size(), MIN_MAPPED_BYTES);
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        if (created) {
+            writeHeader(System.currentTimeMillis());
+            buffer.putInt(HEADER_BYTES, 0);
+        } else if (buffer.getInt(0) != LOG_MAGIC) {
+            throw new IOException("Not a status log: " + logPath);
+        }
+        generation = buffer.getLong(4);
+        writePosition = HEADER_BYTES;
+    }
+
+    private void writeHeader(long newGeneration) {
+        buffer.putInt(0, LOG_MAGIC);
+        buffer.putLong(4, newGeneration);
+        buffer.putInt(12, 0);
+        generation = newGeneration;
+    }
+
+    private void remap(int minCapacity) throws IOException {
+        long size = buffer.capacity();
+        while (size < minCapacity) {
+            size *= 2;
+        }
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Status log exceeds 2 GiB; lower payload.state.maxEntries or compact more often");
+        }
+        buffer.force();
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+    }
+
+    // Returns the log position the checkpoint covers, or the first record if there is no usable
+    // checkpoint for this log generation.
+    private int loadIndex() throws IOException {
+        if (!Files.exists(indexPath)) {
+            return HEADER_BYTES;
+        }
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(indexPath))) {
+            if (in.readInt() != INDEX_MAGIC || in.readLong() != generation) {
+                log.info("Status index {} does not match the log; rebuilding from the log", indexPath);
+                return HEADER_BYTES;
+            }
+            long logEnd = in.readLong();
+            int count = in.readInt();
+            long now = System.currentTimeMillis();
+            for (int i = 0; i < count; i++) {
+                String id = in.readUTF();
+                int offset = in.readInt();
+                index.put(id, offset, Duration.ofMillis(now - in.readLong()));
+            }
+            logRecords = count;
+            return (int) logEnd;
+        } catch (IOException e) {
+            log.warn("Unreadable status index {}; rebuilding from the log", indexPath, e);
+            index.clear();
+            logRecords = 0;
+            return HEADER_BYTES;
+        }
+    }
+
+    // Indexes valid records from the given position and leaves writePosition after the last one.
+    private int scan(int from) {
+        int position = from;
+        int scanned = 0;
+        while (position + RECORD_HEADER_BYTES <= buffer.capacity()) {
+            int length = buffer.getInt(position);
+            if (length <= 0 || position + RECORD_HEADER_BYTES + length > buffer.capacity()) {
+                break;
+            }
+            byte[] body = new byte[length];
+            buffer.get(position + RECORD_HEADER_BYTES, body);
+            crc.reset();
+            crc.update(body);
+            if ((int) crc.getValue() != buffer.getInt(position + 4)) {
+                log.warn("Dropping corrupt status log tail at offset {}", position);
+                break;
+            }
+            PayloadStatus status = decode(body);
+            // past the checkpoint the store time is not recorded; completion time is close to it
+            long age = status.completedAt > 0 ? System.currentTimeMillis() - status.completedAt : 0;
+            index.put(status.payloadId, position, Duration.ofMillis(age));
+            position += RECORD_HEADER_BYTES + length;
+            logRecords++;
+            scanned++;
+        }
+        writePosition = position;
+        if (writePosition + 4 <= buffer.capacity()) {
+            buffer.putInt(writePosition, 0);
+        }
+        return scanned;
+    }
+
+    private void writeIndex() throws IOException {
+        Path tmp = indexPath.resolveSibling("status.idx.tmp");
+        Map<String, Integer> live = index.snapshot();
+        long now = System.currentTimeMillis();
+        try (DataOutputStream out = new DataOutputStream(new java.io.BufferedOutputStream(Files.newOutputStream(tmp)))) {
+            out.writeInt(INDEX_MAGIC);
+            out.writeLong(generation);
+            out.writeLong(writePosition);
+            out.writeInt(live.size());
+            for (Map.Entry<String, Integer> entry : live.entrySet()) {
+                Duration age = index.age(entry.getKey());
+                out.writeUTF(entry.getKey());
+                out.writeInt(entry.getValue());
+                out.writeLong(now - (age == null ? 0 : age.toMillis()));
+            }
+        }
+        Files.move(tmp, indexPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private PayloadStatus read(int offset) {
+        byte[] body = new byte[buffer.getInt(offset)];
+        buffer.get(offset + RECORD_HEADER_BYTES, body);
+        return decode(body);
+    }
+
+    // id, flags (bit 0 success, bit 1 has cluster), batchCount, completedAt, cluster
+    private static byte[] encode(PayloadStatus status) {
+        byte[] id = status.payloadId.getBytes(StandardCharsets.UTF_8);
+        byte[] cluster = status.clusterId == null ? new byte[0] : status.clusterId.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer body = ByteBuffer.allocate(4 + id.length + 1 + 4 + 8 + 4 + cluster.length);
+        body.putInt(id.length).put(id);
+        body.put((byte) ((status.success ? 1 : 0) | (status.clusterId != null ? 2 : 0)));
+        body.putInt(status.batchCount);
+        body.putLong(status.completedAt);
+        body.putInt(cluster.length).put(cluster);
+        return body.array();
+    }
+
+    private static PayloadStatus decode(byte[] bytes) {
+        ByteBuffer body = ByteBuffer.wrap(bytes);
+        PayloadStatus status = new PayloadStatus();
+        byte[] id = new byte[body.getInt()];
+        body.get(id);
+        status.payloadId = new String(id, StandardCharsets.UTF_8);
+        byte flags = body.get();
+        status.success = (flags & 1) != 0;
+        status.batchCount = body.getInt();
+        status.completedAt = body.getLong();
+        byte[] cluster = new byte[body.getInt()];
+        body.get(cluster);
+        status.clusterId = (flags & 2) != 0 ? new String(cluster, StandardCharsets.UTF_8) : null;
+        return status;
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.payload.bhpubwrt;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.serialization.Deserializer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+// Decodes a payload-status record into the statuses it carries: a single JSON object from
+// sendStatus, or a JSON array from the batched publishing mode. Type headers are ignored.
+public class PayloadStatusDeserializer implements Deserializer<List<PayloadStatus>> {
+    private final ObjectMapper mapper = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    private final ObjectReader statusReader = mapper.readerFor(PayloadStatus.class);
+
+    @Override
+    public List<PayloadStatus> deserialize(String topic, byte[] data) {
+        if (data == null) {
+            return null;
+        }
+        try (JsonParser parser = mapper.getFactory().createParser(data)) {
+            JsonToken first = parser.nextToken();
+            if (first == JsonToken.START_OBJECT) {
+                PayloadStatus status = statusReader.readValue(parser);
+                return List.of(status);
+            }
+            if (first != JsonToken.START_ARRAY) {
+                throw new SerializationException("Expected a status object or array on " + topic + " but got " + first);
+            }
+            List<PayloadStatus> statuses = new ArrayList<>();
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                PayloadStatus status = statusReader.readValue(parser);
+                statuses.add(status);
+            }
+            return statuses;
+        } catch (IOException e) {
+            throw new SerializationException("Cannot decode statuses on " + topic, e);
+        }
+    }
+}
@@ -1,31 +1,26 @@
 package com.example.payload.bhpubwrt;
 
-import org.springframework.stereotype.Component;
-
+import java.util.Collection;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 
-@Component
-public class StatusStore {
-    private final Map<String, PayloadStatus> statuses = new ConcurrentHashMap<>();
+// Latest status per payload id, as consumed from payload-status. Selected with
+// payload.status.store.type: memory (default) or mapped.
+public interface StatusStore {
 
-    public void add(PayloadStatus status) {
-        statuses.put(status.payloadId, status);
-    }
+    void add(PayloadStatus status);
 
-    public Map<String, PayloadStatus> getAll() {
-        return statuses;
+    default void addAll(Collection<PayloadStatus> statuses) {
+        for (PayloadStatus status : statuses) {
+            add(status);
+        }
     }
 
-    public int size() {
-        return statuses.size();
-    }
+    // Copy of the retained statuses, oldest first.
+    Map<String, PayloadStatus> getAll();
 
-    public PayloadStatus get(String payloadId) {
-        return statuses.get(payloadId);
-    }
+    int size();
 
-    public void clear() {
-        statuses.clear();
-    }
+    PayloadStatus get(String payloadId);
+
+    void clear();
 }
@@ -0,0 +1,74 @@
+package com.example.payload.bhwrtam;
+
+import com.example.payload.common.TSValues;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.List;
+
+// Records of one sub-batch whose values live in its submission's off-heap arena. The key is
+// shared by every record; only the value addresses stay on the heap. get() decodes a TSValues
+// copy, valueBytes() is a zero-copy view. Each instance holds a reference on the arena and is
+// valid until release(), called once the sub-batch has run.
+final class ArenaRecords extends AbstractList<TSValues> {
+    private final String key;
+    private final OffHeapArenaPool.Arena arena;
+    private final long[] addresses;
+    private final int[] lengths; // -1 = null value
+
+    private ArenaRecords(String key, OffHeapArenaPool.Arena arena, long[] addresses, int[] lengths) {
+        this.key = key;
+        this.arena = arena;
+        this.addresses = addresses;
+        this.lengths = lengths;
+    }
+
+    // Returns null if the arena ran out of room, after undoing the values already copied; the
+    // caller keeps the records on the heap.
+    static ArenaRecords copyOf(String key, List<TSValues> records, OffHeapArenaPool.Arena arena) {
+        OffHeapArenaPool.Mark mark = arena.mark();
+        long[] addresses = new long[records.size()];
+        int[] lengths = new int[records.size()];
+        for (int i = 0; i < addresses.length; i++) {
+            String value = records.get(i).value;
+            if (value == null) {
+                lengths[i] = -1;
+                continue;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            long address = arena.write(bytes);
+            if (address < 0) {
+                arena.rollback(mark);
+                return null;
+            }
+            addresses[i] = address;
+            lengths[i] = bytes.length;
+        }
+        arena.retain();
+        return new ArenaRecords(key, arena, addresses, lengths);
+    }
+
+    void release() {
+        arena.release();
+    }
+
+    @Override
+    public TSValues get(int index) {
+        TSValues record = new TSValues();
+        record.key = key;
+        ByteBuffer bytes = valueBytes(index);
+        record.value = bytes == null ? null : StandardCharsets.UTF_8.decode(bytes).toString();
+        return record;
+    }
+
+    ByteBuffer valueBytes(int index) {
+        int length = lengths[index];
+        return length < 0 ? null : arena.view(addresses[index], length);
+    }
+
+    @Override
+    public int size() {
+        return addresses.length;
+    }
+}
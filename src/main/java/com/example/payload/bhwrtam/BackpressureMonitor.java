@@ -0,0 +1,114 @@
+package com.example.payload.bhwrtam;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Backpressure mode: instead of letting a full lane block the listener thread (and stall
+// poll() past max.poll.interval.ms), pauses the payload-topic containers once the processor's
+// fill level reaches the high-water mark and resumes them at the low-water mark. Paused
+// consumers keep polling, so they stay in the group.
+@Component
+@ConditionalOnProperty(name = "payload.backpressure.enabled", havingValue = "true")
+public class BackpressureMonitor {
+    private static final Logger log = LoggerFactory.getLogger(BackpressureMonitor.class);
+    private static final String PAYLOAD_TOPIC = "payload-topic";
+
+    @Autowired
+    private KafkaPayloadProcessor kafkaPayloadProcessor;
+    @Autowired
+    private KafkaListenerEndpointRegistry listenerRegistry;
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    @Value("${payload.backpressure.highWater:0.8}")
+    private double highWater = 0.8;
+    @Value("${payload.backpressure.lowWater:0.5}")
+    private double lowWater = 0.5;
+    @Value("${payload.backpressure.checkIntervalMs:20}")
+    private long checkIntervalMs = 20;
+
+    private volatile boolean paused;
+    private Counter pauses;
+    private ScheduledExecutorService scheduler;
+
+    @PostConstruct
+    public void start() {
+        if (lowWater >= highWater) {
+            throw new IllegalStateException("payload.backpressure.lowWater (" + lowWater
+                    + ") must be below highWater (" + highWater + ")");
+        }
+        MeterRegistry registry = meterRegistry == null ? Metrics.globalRegistry : meterRegistry;
+        pauses = Counter.builder("payload.backpressure.pauses")
+                .description("Times the payload listeners were paused")
+                .register(registry);
+        Gauge.builder("payload.backpressure.paused", this, m -> m.paused ? 1 : 0)
+                .description("1 while the payload listeners are paused")
+                .register(registry);
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "payload-backpressure");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(this::check, checkIntervalMs, checkIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    public boolean isPaused() {
+        return paused;
+    }
+
+    private void check() {
+        try {
+            double fill = kafkaPayloadProcessor.fillLevel();
+            boolean pause = paused ? fill > lowWater : fill >= highWater;
+            if (pause != paused) {
+                paused = pause;
+                if (pause) {
+                    pauses.increment();
+                }
+                log.info("Payload listeners {} at fill level {}", pause ? "paused" : "resumed", String.format("%.2f", fill));
+            }
+            apply(pause);
+        } catch (RuntimeException e) {
+            log.warn("Backpressure check failed", e);
+        }
+    }
+
+    // Re-applied on every check so containers started or restarted while paused are caught.
+    private void apply(boolean pause) {
+        for (MessageListenerContainer container : listenerRegistry.getListenerContainers()) {
+            String[] topics = container.getContainerProperties().getTopics();
+            if (topics == null || !Arrays.asList(topics).contains(PAYLOAD_TOPIC)) {
+                continue; // status listeners keep consuming
+            }
+            if (pause && !container.isPauseRequested()) {
+                container.pause();
+            } else if (!pause && container.isPauseRequested()) {
+                container.resume();
+            }
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.payload.bhwrtam;
+
+import com.example.payload.common.GroupedTSValues;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Batch variant of BhwrtamConsumer: receives a whole poll per cluster and hands it to the
+// processor in a single submitPayloads call. Enabled with payload.listener.mode=batch.
+@Component
+@ConditionalOnProperty(name = "payload.listener.mode", havingValue = "batch")
+public class BhwrtamBatchConsumer {
+
+    @Autowired
+    private KafkaPayloadProcessor kafkaPayloadProcessor;
+    @Autowired
+    private OffsetCommitTracker commitTracker;
+
+    @KafkaListener(topics = "payload-topic", groupId = "payload-group-cluster1", containerFactory = "batchKafkaListenerContainerFactory")
+    public void listenCluster1(List<ConsumerRecord<String, GroupedTSValues>> records, Acknowledgment ack) {
+        handle(records, ack, "cluster-1");
+    }
+
+    @KafkaListener(topics = "payload-topic", groupId = "payload-group-cluster2", containerFactory = "batchKafkaListenerContainerFactory")
+    public void listenCluster2(List<ConsumerRecord<String, GroupedTSValues>> records, Acknowledgment ack) {
+        handle(records, ack, "cluster-2");
+    }
+
+    @KafkaListener(topics = "payload-topic", groupId = "payload-group-cluster3", containerFactory = "batchKafkaListenerContainerFactory")
+    public void listenCluster3(List<ConsumerRecord<String, GroupedTSValues>> records, Acknowledgment ack) {
+        handle(records, ack, "cluster-3");
+    }
+
+    private void handle(List<ConsumerRecord<String, GroupedTSValues>> records, Acknowledgment ack, String clusterId) {
+        List<Payload> payloads = new ArrayList<>(records.size());
+        Map<TopicPartition, List<Payload>> byPartition = new LinkedHashMap<>();
+        Map<TopicPartition, Long> firstOffsets = new LinkedHashMap<>();
+        for (ConsumerRecord<String, GroupedTSValues> record : records) {
+            TopicPartition partition = new TopicPartition(record.topic(), record.partition());
+            firstOffsets.putIfAbsent(partition, record.offset());
+            List<Payload> partitionPayloads = byPartition.computeIfAbsent(partition, p -> new ArrayList<>());
+            if (record.value() == null) continue; // tombstone or undecodable value
+            String payloadId = record.key() + "::" + clusterId; // embed cluster in id for processor
+            Payload payload = Payload.of(payloadId, record, null);
+            payloads.add(payload);
+            partitionPayloads.add(payload);
+        }
+        if (commitTracker.isEnabled()) {
+            register(clusterId, byPartition, firstOffsets, ack);
+        }
+        try {
+            kafkaPayloadProcessor.submitPayloads(payloads);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return; // left uncommitted, redelivered after restart
+        }
+        if (!commitTracker.isEnabled()) {
+            ack.acknowledge();
+        }
+    }
+
+    // The batch acknowledgment commits each partition of the poll at its last offset, so it is
+    // safe once every partition's part of the poll is releasable. Each partition is tracked as
+    // its own stream at its first offset, as in record mode, so a rebalance or seek that rewinds
+    // one partition is detected there.
+    private void register(String clusterId, Map<TopicPartition, List<Payload>> byPartition,
+                          Map<TopicPartition, Long> firstOffsets, Acknowledgment ack) {
+        if (byPartition.isEmpty()) {
+            ack.acknowledge();
+            return;
+        }
+        AtomicInteger partitionsLeft = new AtomicInteger(byPartition.size());
+        Acknowledgment partitionAck = () -> {
+            if (partitionsLeft.decrementAndGet() == 0) {
+                ack.acknowledge();
+            }
+        };
+        byPartition.forEach((partition, partitionPayloads) -> {
+            String stream = clusterId + '/' + partition.topic() + '-' + partition.partition();
+            OffsetCommitTracker.Ticket ticket = commitTracker.register(stream, firstOffsets.get(partition), partitionAck,
+                    partitionPayloads.size());
+            partitionPayloads.forEach(payload -> payload.onComplete = ticket::complete);
+        });
+    }
+}
@@ -1,41 +1,63 @@
 package com.example.payload.bhwrtam;
 
-import com.example.payload.common.TSValues;
+import com.example.payload.common.GroupedTSValues;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.support.Acknowledgment;
 import org.springframework.stereotype.Component;
 
-import java.util.Arrays;
+import java.util.List;
+
 
 @Component
+@ConditionalOnProperty(name = "payload.listener.mode", havingValue = "record", matchIfMissing = true)
 public class BhwrtamConsumer {
 
     @Autowired
     private KafkaPayloadProcessor kafkaPayloadProcessor;
+    @Autowired
+    private OffsetCommitTracker commitTracker;
 
     @KafkaListener(topics = "payload-topic", groupId = "payload-group-cluster1")
-    public void listenCluster1(ConsumerRecord<String, TSValues[]> record) {
-        handle(record, "cluster-1");
+    public void listenCluster1(ConsumerRecord<String, GroupedTSValues> record, Acknowledgment ack) {
+        handle(record, ack, "cluster-1");
     }
 
     @KafkaListener(topics = "payload-topic", groupId = "payload-group-cluster2")
-    public void listenCluster2(ConsumerRecord<String, TSValues[]> record) {
-        handle(record, "cluster-2");
+    public void listenCluster2(ConsumerRecord<String, GroupedTSValues> record, Acknowledgment ack) {
+        handle(record, ack, "cluster-2");
     }
 
     @KafkaListener(topics = "payload-topic", groupId = "payload-group-cluster3")
-    public void listenCluster3(ConsumerRecord<String, TSValues[]> record) {
-        handle(record, "cluster-3");
+    public void listenCluster3(ConsumerRecord<String, GroupedTSValues> record, Acknowledgment ack) {
+        handle(record, ack, "cluster-3");
+    }
+
+    private void handle(ConsumerRecord<String, GroupedTSValues> record, Acknowledgment ack, String clusterId) {
+        if (!commitTracker.isEnabled()) {
+            if (record.value() != null) {
+                submit(record, clusterId, null);
+            }
+            ack.acknowledge(); // committed after the poll, once the payload is handed off
+            return;
+        }
+        String stream = clusterId + '/' + record.topic() + '-' + record.partition();
+        OffsetCommitTracker.Ticket ticket = commitTracker.register(stream, record.offset(), ack, 1);
+        if (record.value() == null) {
+            ticket.complete(); // tombstone or empty value, nothing to wait for
+            return;
+        }
+        submit(record, clusterId, ticket::complete);
     }
 
-    private void handle(ConsumerRecord<String, TSValues[]> record, String clusterId) {
+    private void submit(ConsumerRecord<String, GroupedTSValues> record, String clusterId, Runnable onComplete) {
         String payloadId = record.key() + "::" + clusterId; // embed cluster in id for processor
         try {
-            TSValues[] array = record.value();
-            kafkaPayloadProcessor.submitLargePayload(payloadId, Arrays.asList(array));
+            kafkaPayloadProcessor.submitPayloads(List.of(Payload.of(payloadId, record, onComplete)));
         } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
+            Thread.currentThread().interrupt(); // left uncommitted, redelivered after restart
         }
     }
-}
\ No newline at end of file
+}
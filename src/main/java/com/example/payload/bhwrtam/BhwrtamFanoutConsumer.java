@@ -0,0 +1,73 @@
+package com.example.payload.bhwrtam;
+
+import com.example.payload.common.GroupedTSValues;
+import jakarta.annotation.PostConstruct;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+// Fan-out variant of BhwrtamConsumer: one consumer group fetches and decodes each record once,
+// and the grouped payload is submitted to every cluster in payload.fanout.clusters as
+// key::cluster-N. The clusters share the same GroupedTSValues instance, which is read-only
+// from here on. Enabled with payload.listener.mode=fanout.
+@Component
+@ConditionalOnProperty(name = "payload.listener.mode", havingValue = "fanout")
+public class BhwrtamFanoutConsumer {
+
+    @Autowired
+    private KafkaPayloadProcessor kafkaPayloadProcessor;
+    @Autowired
+    private OffsetCommitTracker commitTracker;
+    @Value("${payload.fanout.clusters:cluster-1,cluster-2,cluster-3}")
+    private String clustersRaw = "cluster-1,cluster-2,cluster-3";
+    private List<String> clusters;
+
+    @PostConstruct
+    void init() {
+        clusters = Stream.of(clustersRaw.split(","))
+                .map(String::trim)
+                .filter(s -> !s.isEmpty())
+                .toList();
+        if (clusters.isEmpty()) {
+            throw new IllegalStateException("payload.fanout.clusters must name at least one cluster");
+        }
+    }
+
+    @KafkaListener(topics = "payload-topic", groupId = "payload-group-fanout")
+    public void listen(ConsumerRecord<String, GroupedTSValues> record, Acknowledgment ack) {
+        OffsetCommitTracker.Ticket ticket = null;
+        if (commitTracker.isEnabled()) {
+            // committed once every cluster has completed the payload
+            int parts = record.value() == null ? 0 : clusters.size();
+            ticket = commitTracker.register("fanout/" + record.topic() + '-' + record.partition(), record.offset(), ack, parts);
+        }
+        if (record.value() == null) {
+            if (ticket == null) {
+                ack.acknowledge();
+            }
+            return; // tombstone or empty value
+        }
+        List<Payload> payloads = new ArrayList<>(clusters.size());
+        for (String clusterId : clusters) {
+            Runnable onComplete = ticket == null ? null : ticket::complete;
+            payloads.add(Payload.of(record.key() + "::" + clusterId, record, onComplete));
+        }
+        try {
+            kafkaPayloadProcessor.submitPayloads(payloads);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return; // left uncommitted, redelivered after restart
+        }
+        if (ticket == null) {
+            ack.acknowledge();
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.payload.bhwrtam;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+// Default lane: a LinkedBlockingQueue.
+public class BlockingQueueLane implements SubBatchLane {
+    private final BlockingQueue<SubBatch> queue;
+    private final int capacity;
+
+    public BlockingQueueLane(int capacity) {
+        this.queue = new LinkedBlockingQueue<>(capacity);
+        this.capacity = capacity;
+    }
+
+    @Override
+    public void put(SubBatch batch) throws InterruptedException {
+        queue.put(batch);
+    }
+
+    @Override
+    public boolean offer(SubBatch batch) {
+        return queue.offer(batch);
+    }
+
+    @Override
+    public SubBatch poll() {
+        return queue.poll();
+    }
+
+    @Override
+    public SubBatch poll(long timeout, TimeUnit unit) throws InterruptedException {
+        return queue.poll(timeout, unit);
+    }
+
+    @Override
+    public int size() {
+        return queue.size();
+    }
+
+    @Override
+    public int capacity() {
+        return capacity;
+    }
+}
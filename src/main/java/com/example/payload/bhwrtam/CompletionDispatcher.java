@@ -0,0 +1,68 @@
+package com.example.payload.bhwrtam;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+// Delivers completed payload ids to a handler in small batches, several batches at a time.
+// Completions go through a bounded multi-producer sink: when it is full, the emitting worker
+// parks until the handlers catch up instead of buffering without limit.
+public class CompletionDispatcher {
+    private static final Logger log = LoggerFactory.getLogger(CompletionDispatcher.class);
+    private static final long OVERFLOW_PARK_NANOS = 100_000L;
+
+    private final Sinks.Many<String> sink;
+    private final Scheduler scheduler;
+    private final Disposable subscription;
+    private final Sinks.EmitFailureHandler retryUntilAccepted = (signalType, result) -> {
+        if (result == Sinks.EmitResult.FAIL_NON_SERIALIZED) {
+            return true; // another worker is emitting right now
+        }
+        if (result == Sinks.EmitResult.FAIL_OVERFLOW && !isDisposed()) {
+            LockSupport.parkNanos(OVERFLOW_PARK_NANOS); // backpressure on the worker
+            return !Thread.currentThread().isInterrupted();
+        }
+        return false;
+    };
+
+    public CompletionDispatcher(Consumer<List<String>> handler, int concurrency, int maxBatchSize,
+                                Duration maxBatchWindow, int bufferSize) {
+        this.sink = Sinks.many().multicast().onBackpressureBuffer(bufferSize, false);
+        this.scheduler = Schedulers.newBoundedElastic(concurrency, bufferSize, "payload-completion");
+        this.subscription = sink.asFlux()
+                .bufferTimeout(maxBatchSize, maxBatchWindow, true)
+                .flatMap(batch -> Mono.fromRunnable(() -> dispatch(handler, batch)).subscribeOn(scheduler), concurrency)
+                .subscribe();
+    }
+
+    public void emit(String payloadId) {
+        sink.emitNext(payloadId, retryUntilAccepted);
+    }
+
+    public boolean isDisposed() {
+        return subscription.isDisposed();
+    }
+
+    public void shutdown() {
+        subscription.dispose();
+        scheduler.dispose();
+    }
+
+    private void dispatch(Consumer<List<String>> handler, List<String> batch) {
+        try {
+            handler.accept(batch);
+        } catch (Exception e) {
+            // keep the pipeline alive; one bad batch must not stop later completions
+            log.error("Failed to handle completed payloads {}", batch, e);
+        }
+    }
+}
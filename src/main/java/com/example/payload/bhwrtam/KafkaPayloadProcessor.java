@@ -1,31 +1,45 @@
 package com.example.payload.bhwrtam;
 
+import com.example.payload.common.BoundedStore;
+import com.example.payload.common.GroupedTSValues;
+import com.example.payload.common.KeyDictionary;
+import com.example.payload.common.SampledLogger;
 import com.example.payload.common.TSValues;
 import com.example.payload.bhpubwrt.BhpubwrtProducer;
 import com.example.payload.bhpubwrt.PayloadStatus;
+import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import reactor.core.publisher.Flux;
-import reactor.core.publisher.Sinks;
 
 import java.time.Duration;
 import java.util.*;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 @Service
 public class KafkaPayloadProcessor {
-	private final int NUM_QUEUES = 4;
-	private final Map<Integer, BlockingQueue<SubBatch>> queueMap = new HashMap<>();
-	private final ExecutorService executorService;
+	private static final Logger log = LoggerFactory.getLogger(KafkaPayloadProcessor.class);
+	// Lane count used when an executor is injected without an explicit lane count.
+	private static final int DEFAULT_INJECTED_LANES = 4;
+	// Own-lane poll timeout while work stealing, short so idle workers notice busy lanes.
+	private static final long STEAL_POLL_MS = 5;
+	// In backpressure mode lanes (and the virtual in-flight cap) hold this many times their
+	// configured capacity, so a poll that arrives before the containers pause is mostly
+	// absorbed there. Whatever still does not fit is deferred rather than blocking the listener.
+	private static final int BACKPRESSURE_HEADROOM = 4;
+	private final List<SubBatchLane> lanes = new ArrayList<>();
+	private final List<Overflow> overflows = new ArrayList<>();
+	private ExecutorService executorService;
+	private int numLanes;
 	private StatusTracker tracker;
-	private final Sinks.Many<String> onCompleteSink = Sinks.many().unicast().onBackpressureBuffer();
+	private CompletionDispatcher completionDispatcher;
 	private final AtomicBoolean started = new AtomicBoolean(false);
 	@Value("${payload.randomFailures:false}")
 	private boolean randomFailures;
@@ -33,35 +47,110 @@ public class KafkaPayloadProcessor {
 	private String failKey;
 	@Value("${payload.failClusters:}")
 	private String failClustersRaw;
+	@Value("${payload.lanes:0}")
+	private int laneCount = 0; // 0 = one lane per available core
+	@Value("${payload.laneCapacity:100}")
+	private int laneCapacity = 100;
+	@Value("${payload.lane.type:linked}")
+	private String laneType = "linked"; // linked | ring
+	@Value("${payload.lane.singleProducer:false}")
+	private boolean laneSingleProducer; // only safe when a single listener thread submits
+	@Value("${payload.lane.waitStrategy:BLOCK}")
+	private WaitStrategy laneWaitStrategy = WaitStrategy.BLOCK;
+	@Value("${payload.maxSubBatchRecords:0}")
+	private int maxSubBatchRecords = 0; // 0 = one sub-batch per key regardless of size
+	@Value("${payload.workStealing:false}")
+	private boolean workStealing;
+	@Value("${payload.log.sample.subbatch:0.01}")
+	private double subBatchLogSampleRate = 0.01;
+	@Value("${payload.log.sample.completion:1.0}")
+	private double completionLogSampleRate = 1.0;
+	private SampledLogger subBatchLog;
+	private SampledLogger completionLog;
+	@Value("${payload.backpressure.enabled:false}")
+	private boolean backpressure;
+	@Value("${payload.execution.mode:lanes}")
+	private String executionMode = "lanes"; // lanes | virtual
+	@Value("${payload.virtual.maxInFlight:1024}")
+	private int virtualMaxInFlight = 1024;
+	private VirtualThreadSubBatchExecutor virtualExecutor;
+	@Value("${payload.completion.concurrency:4}")
+	private int completionConcurrency = 4;
+	@Value("${payload.completion.maxBatchSize:64}")
+	private int completionMaxBatchSize = 64;
+	@Value("${payload.completion.maxBatchWindowMs:5}")
+	private long completionMaxBatchWindowMs = 5;
+	@Value("${payload.completion.bufferSize:1024}")
+	private int completionBufferSize = 1024;
+	@Value("${payload.state.maxEntries:100000}")
+	private int stateMaxEntries = 100000;
+	@Value("${payload.state.ttlMs:600000}")
+	private long stateTtlMs = 600000; // 0 = size bound only
+	// Off-heap mode: record values of in-flight payloads are copied into pooled direct buffers,
+	// one arena per submission, so large payloads do not linger on the heap until completion
+	@Value("${payload.offheap.enabled:false}")
+	private boolean offHeap;
+	@Value("${payload.offheap.chunkBytes:1048576}")
+	private int offHeapChunkBytes = 1 << 20;
+	@Value("${payload.offheap.maxBytes:268435456}")
+	private long offHeapMaxBytes = 256L << 20; // beyond this, sub-batches stay on the heap
+	@Value("${payload.offheap.maxPooledChunks:64}")
+	private int offHeapMaxPooledChunks = 64;
+	private OffHeapArenaPool arenaPool;
 	private java.util.Set<String> failClusters = java.util.Collections.emptySet();
 	private final AtomicBoolean shuttingDown = new AtomicBoolean(false);
 	private final AtomicInteger completedPayloads = new AtomicInteger(0);
 	private final AtomicInteger successfulPayloads = new AtomicInteger(0);
-	private final List<String> successfulPayloadIds = Collections.synchronizedList(new ArrayList<>());
+	// In-flight only: entries are removed when the payload completes.
 	private final ConcurrentMap<String, Integer> payloadBatchSizes = new ConcurrentHashMap<>();
-	private final ConcurrentMap<String, java.util.Set<String>> clustersCompleted = new ConcurrentHashMap<>();
-	private final ConcurrentMap<String, Boolean> basePayloadCounted = new ConcurrentHashMap<>();
+	private final ConcurrentMap<String, Runnable> completionCallbacks = new ConcurrentHashMap<>();
+	// History of completed payloads, kept for a bounded number of recent payloads.
+	private BoundedStore<String, Boolean> successfulPayloadIds;
+	private BoundedStore<String, java.util.Set<String>> clustersCompleted;
+	private BoundedStore<String, Boolean> basePayloadCounted;
+	// Chunked payloads whose last chunk has not arrived; one evicted before then fails.
+	private BoundedStore<String, OpenPayload> openPayloads;
 
 	@Autowired(required = false)
 	private BhpubwrtProducer bhpubwrtProducer; // optional injection for status publishing
 
-	// Default constructor used by Spring - creates a fixed thread pool (non-daemon)
-	// for workers.
+	@Autowired(required = false)
+	private KeyDictionary keyDictionary; // shared with the payload deserializers
+
+	@Autowired(required = false)
+	private MeterRegistry meterRegistry;
+	private ProcessorMetrics metrics;
+
+	// Default constructor used by Spring - the fixed (non-daemon) worker pool is created in
+	// init once payload.lanes is known.
 	public KafkaPayloadProcessor() {
-		this.executorService = Executors.newFixedThreadPool(NUM_QUEUES);
 		// defer init until @PostConstruct or first use
 	}
 
 	// Package-private constructor for tests to inject a custom ExecutorService
-	// (e.g., daemon threads).
+	// (e.g., daemon threads). The executor must have a thread per lane.
 	public KafkaPayloadProcessor(ExecutorService executorService) {
+		this(executorService, DEFAULT_INJECTED_LANES);
+	}
+
+	public KafkaPayloadProcessor(ExecutorService executorService, int laneCount) {
 		this.executorService = executorService;
+		this.laneCount = laneCount;
 		// defer init; tests using direct construction will trigger lazy init on first submit
 	}
 
 	// Allow tests to shut down worker threads.
 	public void shutdown() {
 		if (shuttingDown.compareAndSet(false, true)) {
+			if (completionDispatcher != null) {
+				completionDispatcher.shutdown();
+			}
+			if (virtualExecutor != null) {
+				virtualExecutor.shutdown();
+			}
+			if (executorService == null) {
+				return; // never started
+			}
 			executorService.shutdownNow();
 			try {
 				executorService.awaitTermination(5, TimeUnit.SECONDS);
@@ -72,10 +161,18 @@ public class KafkaPayloadProcessor {
 	}
 
 	@PostConstruct
-	public void init() {
-		if (!started.compareAndSet(false, true)) {
+	public synchronized void init() {
+		if (started.get()) {
 			return; // already initialized
 		}
+		start();
+		started.set(true); // set last so ensureStarted never sees a half-built processor
+	}
+
+	private void start() {
+		if (keyDictionary == null) {
+			keyDictionary = new KeyDictionary();
+		}
 		// parse fail clusters
 		if (failClustersRaw != null && !failClustersRaw.isBlank()) {
 			failClusters = Stream.of(failClustersRaw.split(","))
@@ -83,20 +180,88 @@ public class KafkaPayloadProcessor {
 					.filter(s -> !s.isEmpty())
 					.collect(java.util.stream.Collectors.toSet());
 		}
-		tracker = new StatusTracker(onCompleteSink);
-		for (int i = 0; i < NUM_QUEUES; i++) {
-			BlockingQueue<SubBatch> queue = new LinkedBlockingQueue<>(100);
-			queueMap.put(i, queue);
+		completionDispatcher = new CompletionDispatcher(this::handleCompletePayloads, completionConcurrency,
+				completionMaxBatchSize, Duration.ofMillis(completionMaxBatchWindowMs), completionBufferSize);
+		subBatchLog = new SampledLogger("payload.subbatch", subBatchLogSampleRate);
+		completionLog = new SampledLogger("payload.completion", completionLogSampleRate);
+		metrics = new ProcessorMetrics(meterRegistry);
+		Duration stateTtl = Duration.ofMillis(stateTtlMs);
+		successfulPayloadIds = metrics.registerStore(new BoundedStore<>(stateMaxEntries, stateTtl), "successful-payloads");
+		clustersCompleted = metrics.registerStore(new BoundedStore<>(stateMaxEntries, stateTtl), "clusters-completed");
+		basePayloadCounted = metrics.registerStore(new BoundedStore<>(stateMaxEntries, stateTtl), "payloads-counted");
+		tracker = new StatusTracker(completionDispatcher::emit, metrics);
+		if (offHeap) {
+			arenaPool = metrics.registerOffHeap(new OffHeapArenaPool(offHeapChunkBytes, offHeapMaxBytes, offHeapMaxPooledChunks));
+		}
+		openPayloads = metrics.registerStore(new BoundedStore<>(stateMaxEntries, stateTtl, (payloadId, open, cause) -> {
+			completionLog.atWarn().setMessage("Chunked payload incomplete, failing it")
+					.addKeyValue("payloadId", payloadId)
+					.addKeyValue("chunks", open.nextChunk)
+					.addKeyValue("cause", cause)
+					.log();
+			tracker.abort(payloadId);
+		}), "open-chunked-payloads");
+		if ("virtual".equalsIgnoreCase(executionMode)) {
+			if (VirtualThreadSubBatchExecutor.isSupported()) {
+				virtualExecutor = new VirtualThreadSubBatchExecutor(virtualMaxInFlight, hardCapacity(virtualMaxInFlight),
+						this::runBatch);
+				return;
+			}
+			log.warn("payload.execution.mode=virtual needs Java 21+, running sub-batches on lanes instead");
+		}
+		numLanes = laneCount > 0 ? laneCount : Runtime.getRuntime().availableProcessors();
+		if (executorService == null) {
+			executorService = Executors.newFixedThreadPool(numLanes);
+		}
+		for (int i = 0; i < numLanes; i++) {
+			lanes.add(newLane());
+			overflows.add(new Overflow());
+		}
+		metrics.registerLanes(lanes);
+		for (int i = 0; i < numLanes; i++) {
 			int idx = i;
-			executorService.submit(() -> workerLoop(queueMap.get(idx)));
+			executorService.submit(() -> workerLoop(idx));
+		}
+	}
+
+	private SubBatchLane newLane() {
+		if ("ring".equalsIgnoreCase(laneType)) {
+			return new RingBufferLane(hardCapacity(laneCapacity), laneSingleProducer, laneWaitStrategy);
+		}
+		return new BlockingQueueLane(hardCapacity(laneCapacity));
+	}
+
+	private int hardCapacity(int capacity) {
+		return backpressure ? capacity * BACKPRESSURE_HEADROOM : capacity;
+	}
+
+	// Fill of the fullest lane relative to payload.laneCapacity, or of the in-flight cap in
+	// virtual mode, counting deferred sub-batches. BackpressureMonitor pauses the listener
+	// containers on it; in backpressure mode it exceeds 1.0 while a poll is being absorbed.
+	public double fillLevel() {
+		if (!started.get()) {
+			return 0;
 		}
+		if (virtualExecutor != null) {
+			return (double) virtualExecutor.inFlight() / virtualMaxInFlight;
+		}
+		int deepest = 0;
+		for (int i = 0; i < lanes.size(); i++) {
+			deepest = Math.max(deepest, lanes.get(i).size() + overflows.get(i).size);
+		}
+		return (double) deepest / laneCapacity;
+	}
 
-		Flux<String> completedFlux = onCompleteSink.asFlux();
-		completedFlux.delayElements(Duration.ofMillis(100)).subscribe(this::handleCompletePayload);
+	// Dictionary ids are dense, so keys spread evenly over lanes without hashing the string;
+	// keys past the dictionary bound fall back to the string hash. Chunks of a split key go to
+	// consecutive lanes so they run side by side.
+	private int route(SubBatch batch) {
+		int base = batch.keyId != KeyDictionary.NO_ID ? batch.keyId : batch.key.hashCode();
+		return Math.floorMod(base + batch.chunk, numLanes);
 	}
 
-	private int route(String key) {
-		return Math.abs(key.hashCode() % NUM_QUEUES);
+	public int getLaneCount() {
+		return numLanes;
 	}
 
 	private void ensureStarted() {
@@ -107,18 +272,186 @@ public class KafkaPayloadProcessor {
 
 	public void submitLargePayload(String payloadId, List<TSValues> records) throws InterruptedException {
 		ensureStarted();
-		Map<String, List<TSValues>> grouped = records.stream().collect(Collectors.groupingBy(r -> r.key));
-		int index = 0;
-		tracker.init(payloadId, grouped.size());
-		payloadBatchSizes.put(payloadId, grouped.size());
-		for (Map.Entry<String, List<TSValues>> entry : grouped.entrySet()) {
-			String key = entry.getKey();
-			int queueId = route(key);
-			SubBatch batch = new SubBatch(payloadId, index++, key, entry.getValue());
-			queueMap.get(queueId).put(batch);
+		submitGroupedPayload(payloadId, GroupedTSValues.of(records, keyDictionary));
+	}
+
+	public void submitGroupedPayload(String payloadId, GroupedTSValues records) throws InterruptedException {
+		submitPayloads(List.of(new Payload(payloadId, records)));
+	}
+
+	// onComplete runs once the payload's status has been published, whether the payload
+	// succeeded or failed. It does not run if publishing the status fails.
+	public void submitGroupedPayload(String payloadId, GroupedTSValues records, Runnable onComplete) throws InterruptedException {
+		submitPayloads(List.of(new Payload(payloadId, records, onComplete)));
+	}
+
+	// Groups, registers and routes every payload first, then enqueues lane by lane so a
+	// whole poll's worth of sub-batches is handed off in one pass. Blocks while a lane is full,
+	// except in backpressure mode, where the excess is deferred and the call never blocks.
+	public void submitPayloads(List<Payload> payloads) throws InterruptedException {
+		ensureStarted();
+		List<SubBatch> batches = new ArrayList<>();
+		for (Payload payload : payloads) {
+			batches.addAll(payload.chunk < 0 ? register(payload) : registerChunk(payload));
+		}
+		if (virtualExecutor != null) {
+			for (SubBatch batch : batches) {
+				long start = System.nanoTime();
+				if (backpressure) {
+					virtualExecutor.submitOrDefer(batch);
+				} else {
+					virtualExecutor.submit(batch);
+				}
+				metrics.enqueueWait().record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+			}
+			return;
+		}
+		Map<Integer, List<SubBatch>> byQueue = new HashMap<>();
+		for (SubBatch batch : batches) {
+			byQueue.computeIfAbsent(route(batch), q -> new ArrayList<>()).add(batch);
+		}
+		for (Map.Entry<Integer, List<SubBatch>> entry : byQueue.entrySet()) {
+			if (backpressure) {
+				offerOrDefer(entry.getKey(), entry.getValue());
+				continue;
+			}
+			SubBatchLane queue = lanes.get(entry.getKey());
+			for (SubBatch batch : entry.getValue()) {
+				long start = System.nanoTime();
+				queue.put(batch);
+				metrics.enqueueWait().record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+			}
 		}
 	}
 
+	// Once a lane's overflow holds anything, later sub-batches queue behind it, so a key's
+	// sub-batches still run in submission order.
+	private void offerOrDefer(int laneIdx, List<SubBatch> batches) {
+		SubBatchLane lane = lanes.get(laneIdx);
+		Overflow overflow = overflows.get(laneIdx);
+		synchronized (overflow) {
+			for (SubBatch batch : batches) {
+				if (overflow.size > 0 || !lane.offer(batch)) {
+					overflow.batches.add(batch);
+					overflow.size = overflow.batches.size();
+				}
+			}
+		}
+	}
+
+	// Moves deferred sub-batches into the lane as it frees room; run by the lane's worker.
+	private void drainOverflow(int laneIdx) {
+		Overflow overflow = overflows.get(laneIdx);
+		if (overflow.size == 0) {
+			return;
+		}
+		SubBatchLane lane = lanes.get(laneIdx);
+		synchronized (overflow) {
+			while (!overflow.batches.isEmpty() && lane.offer(overflow.batches.peek())) {
+				overflow.batches.poll();
+			}
+			overflow.size = overflow.batches.size();
+		}
+	}
+
+	private List<SubBatch> register(Payload payload) {
+		int attempt = tracker.nextAttempt();
+		List<SubBatch> batches = split(payload, attempt, 0);
+		payloadBatchSizes.put(payload.payloadId, batches.size());
+		addCallback(payload);
+		tracker.init(payload.payloadId, batches.size(), attempt);
+		return batches;
+	}
+
+	// Chunks of one payload arrive in order on one partition. The first opens the payload, each
+	// one's sub-batches are tracked and run as soon as it arrives, and the last seals the
+	// payload, fixing its sub-batch count. A chunk out of sequence (the start of its payload
+	// was never seen, e.g. consumption resumed mid-payload) is dropped.
+	private List<SubBatch> registerChunk(Payload payload) {
+		String payloadId = payload.payloadId;
+		OpenPayload open;
+		if (payload.chunk == 0) {
+			open = new OpenPayload(tracker.nextAttempt());
+			openPayloads.remove(payloadId); // a redelivered payload starts over as a new attempt
+			openPayloads.put(payloadId, open);
+			payloadBatchSizes.put(payloadId, 0);
+			tracker.open(payloadId, open.attempt);
+		} else {
+			open = openPayloads.get(payloadId);
+			if (open == null || open.nextChunk != payload.chunk) {
+				completionLog.atWarn().setMessage("Dropped payload chunk out of sequence")
+						.addKeyValue("payloadId", payloadId)
+						.addKeyValue("chunk", payload.chunk)
+						.addKeyValue("expected", open == null ? 0 : open.nextChunk)
+						.log();
+				if (payload.onComplete != null) {
+					payload.onComplete.run(); // nothing will complete it
+				}
+				return List.of();
+			}
+		}
+		open.nextChunk = payload.chunk + 1;
+		List<SubBatch> batches = split(payload, open.attempt, open.batchCount);
+		open.batchCount += batches.size();
+		payloadBatchSizes.merge(payloadId, batches.size(), Integer::sum);
+		addCallback(payload);
+		tracker.extend(payloadId, batches.size());
+		if (payload.lastChunk && openPayloads.remove(payloadId) != null) { // null: evicted and aborted meanwhile
+			tracker.seal(payloadId);
+		}
+		return batches;
+	}
+
+	private void addCallback(Payload payload) {
+		if (payload.onComplete != null) {
+			// a payload id resubmitted while in flight completes once, so both callbacks run then
+			completionCallbacks.merge(payload.payloadId, payload.onComplete, (first, second) -> () -> {
+				first.run();
+				second.run();
+			});
+		}
+	}
+
+	// One sub-batch per key, except that key groups above payload.maxSubBatchRecords are cut
+	// into ordered chunks so a hot key is spread over several workers. Every chunk is tracked
+	// under its own index.
+	private List<SubBatch> split(Payload payload, int attempt, int firstIndex) {
+		List<SubBatch> batches = new ArrayList<>(payload.records.keyCount());
+		OffHeapArenaPool.Arena arena = arenaPool == null ? null : arenaPool.newArena();
+		for (GroupedTSValues.Group group : payload.records.groups()) {
+			KeyDictionary.Key key = group.key;
+			List<TSValues> records = group.records();
+			if (maxSubBatchRecords <= 0 || records.size() <= maxSubBatchRecords) {
+				batches.add(new SubBatch(payload.payloadId, attempt, firstIndex + batches.size(), key.value, key.id, 0, store(arena, key.value, records)));
+				continue;
+			}
+			int chunk = 0;
+			for (int from = 0; from < records.size(); from += maxSubBatchRecords) {
+				List<TSValues> slice = records.subList(from, Math.min(from + maxSubBatchRecords, records.size()));
+				batches.add(new SubBatch(payload.payloadId, attempt, firstIndex + batches.size(), key.value, key.id, chunk++, store(arena, key.value, slice)));
+			}
+		}
+		if (arena != null) {
+			arena.release(); // from here on the sub-batches hold it
+		}
+		return batches;
+	}
+
+	// Copies the values into the submission's arena in off-heap mode; the heap records are kept
+	// when the pool is exhausted.
+	private List<TSValues> store(OffHeapArenaPool.Arena arena, String key, List<TSValues> records) {
+		if (arena == null) {
+			return records;
+		}
+		List<TSValues> copy = ArenaRecords.copyOf(key, records, arena);
+		return copy == null ? records : copy;
+	}
+
+	// Off-heap bytes held by in-flight payloads, 0 unless payload.offheap.enabled.
+	public long offHeapBytesInUse() {
+		return arenaPool == null ? 0 : arenaPool.usedBytes();
+	}
+
 	public int getCompletedPayloads() {
 		return completedPayloads.get();
 	}
@@ -127,32 +460,75 @@ public class KafkaPayloadProcessor {
 		return successfulPayloads.get();
 	}
 
+	// The most recent successful payloads, oldest first, up to payload.state.maxEntries.
 	public List<String> getSuccessfulPayloadIds() {
-		return new ArrayList<>(successfulPayloadIds);
+		return successfulPayloadIds == null ? new ArrayList<>() : successfulPayloadIds.keys();
 	}
 
-	private void workerLoop(BlockingQueue<SubBatch> queue) {
+	private void workerLoop(int laneIdx) {
+		SubBatchLane queue = lanes.get(laneIdx);
 		while (!shuttingDown.get() && !Thread.currentThread().isInterrupted()) {
 			try {
-				SubBatch batch = queue.poll(500, TimeUnit.MILLISECONDS);
+				SubBatch batch;
+				if (workStealing) {
+					batch = queue.poll();
+					if (batch == null) {
+						batch = steal(laneIdx);
+					}
+					if (batch == null) {
+						batch = queue.poll(STEAL_POLL_MS, TimeUnit.MILLISECONDS);
+					}
+				} else {
+					batch = queue.poll(500, TimeUnit.MILLISECONDS);
+				}
 				if (batch == null) {
+					drainOverflow(laneIdx);
 					continue; // check shutdown periodically
 				}
-				try {
-					processBatch(batch);
-					tracker.update(batch.payloadId, batch.index, SubBatchStatus.SUCCESS);
-				} catch (Exception e) {
-					tracker.update(batch.payloadId, batch.index, SubBatchStatus.FAILURE);
-				}
+				runBatch(batch);
+				drainOverflow(laneIdx);
 			} catch (InterruptedException e) {
 				Thread.currentThread().interrupt();
 			}
 		}
 	}
 
+	private void runBatch(SubBatch batch) {
+		long start = System.nanoTime();
+		try {
+			processBatch(batch);
+			metrics.subBatchDuration().record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+			tracker.update(batch.payloadId, batch.attempt, batch.index, SubBatchStatus.SUCCESS);
+		} catch (Exception e) {
+			tracker.update(batch.payloadId, batch.attempt, batch.index, SubBatchStatus.FAILURE);
+		} finally {
+			batch.release();
+		}
+	}
+
+	// Takes the head of the most backed-up other lane. Per-key ordering across payloads is not
+	// kept once a stolen sub-batch runs next to its lane's own work.
+	private SubBatch steal(int laneIdx) {
+		SubBatchLane victim = null;
+		int deepest = 0;
+		for (int i = 1; i < numLanes; i++) {
+			SubBatchLane lane = lanes.get((laneIdx + i) % numLanes);
+			int depth = lane.size();
+			if (depth > deepest) {
+				deepest = depth;
+				victim = lane;
+			}
+		}
+		return victim == null ? null : victim.poll();
+	}
+
 	private void processBatch(SubBatch batch) {
-		System.out.printf("Processing payload %s, key %s, batch %d with %d records%n", batch.payloadId, batch.key,
-				batch.index, batch.records.size());
+		subBatchLog.atInfo().setMessage("Processing sub-batch")
+				.addKeyValue("payloadId", batch.payloadId)
+				.addKeyValue("key", batch.key)
+				.addKeyValue("batch", batch.index)
+				.addKeyValue("records", batch.records.size())
+				.log();
 
 		String clusterId = "cluster-unknown";
 		if (batch.payloadId.contains("::")) {
@@ -169,8 +545,57 @@ public class KafkaPayloadProcessor {
 		}
 	}
 
-	private void handleCompletePayload(String payloadId) {
+	private void handleCompletePayloads(List<String> payloadIds) {
+		List<PayloadStatus> statuses = new ArrayList<>(payloadIds.size());
+		for (String payloadId : payloadIds) {
+			statuses.add(handleCompletePayload(payloadId));
+		}
+		// taken now, so a resubmission of the same id registers a callback of its own
+		Map<String, Runnable> callbacks = new LinkedHashMap<>();
+		for (String payloadId : payloadIds) {
+			Runnable callback = completionCallbacks.remove(payloadId);
+			if (callback != null) {
+				callbacks.put(payloadId, callback);
+			}
+		}
+		if (bhpubwrtProducer == null) {
+			runCallbacks(callbacks);
+			return;
+		}
+		// still publish per cluster status for multi-cluster aggregation
+		bhpubwrtProducer.sendStatuses(statuses).whenComplete((published, error) -> {
+			if (error == null) {
+				runCallbacks(callbacks);
+				return;
+			}
+			// no callback: the records stay uncommitted and are redelivered, so the status is
+			// published again instead of being lost
+			completionLog.atWarn().setMessage("Status publication failed, payloads left uncommitted")
+					.addKeyValue("payloads", payloadIds.size())
+					.setCause(error)
+					.log();
+		});
+	}
+
+	private void runCallbacks(Map<String, Runnable> callbacks) {
+		callbacks.forEach((payloadId, callback) -> {
+			try {
+				callback.run();
+			} catch (RuntimeException e) {
+				completionLog.atWarn().setMessage("Completion callback failed")
+						.addKeyValue("payloadId", payloadId)
+						.setCause(e)
+						.log();
+			}
+		});
+	}
+
+	private PayloadStatus handleCompletePayload(String payloadId) {
 		boolean success = tracker.isSuccessful(payloadId);
+		long elapsed = tracker.elapsedNanos(payloadId);
+		if (elapsed >= 0) {
+			metrics.payloadDuration().record(elapsed, TimeUnit.NANOSECONDS);
+		}
 		String clusterId = "cluster-unknown";
 		String clusterScopedId = payloadId;
 		if (payloadId.contains("::")) {
@@ -178,25 +603,44 @@ public class KafkaPayloadProcessor {
 			clusterId = parts[1];
 			payloadId = parts[0];
 		}
-		System.out.printf("Payload %s COMPLETED in %s. Status: %s%n", payloadId, clusterId, success ? "SUCCESS" : "FAILURE");
+		(success ? completionLog.atInfo() : completionLog.atWarn()).setMessage("Payload completed")
+				.addKeyValue("payloadId", payloadId)
+				.addKeyValue("cluster", clusterId)
+				.addKeyValue("status", success ? "SUCCESS" : "FAILURE")
+				.log();
 		tracker.remove(clusterScopedId);
-		// Increment completedPayloads only once per base payload id
-		if (basePayloadCounted.putIfAbsent(payloadId, true) == null) {
+		// Increment completedPayloads only once per base payload id; a cluster reporting after its
+		// payload has been evicted is counted again.
+		if (basePayloadCounted.putIfAbsent(payloadId, Boolean.TRUE) == null) {
 			completedPayloads.incrementAndGet();
 			if (success) {
 				successfulPayloads.incrementAndGet();
 			}
 		}
 		if (success) {
-			successfulPayloadIds.add(payloadId + "@" + clusterId);
+			successfulPayloadIds.put(payloadId + "@" + clusterId, Boolean.TRUE);
 		}
 		int batchSize = payloadBatchSizes.getOrDefault(clusterScopedId, 0);
-		if (bhpubwrtProducer != null) {
-			// still publish per cluster status for multi-cluster aggregation
-			bhpubwrtProducer.sendStatus(new PayloadStatus(payloadId, success, batchSize, clusterId));
-		}
 		payloadBatchSizes.remove(clusterScopedId);
 		clustersCompleted.computeIfAbsent(payloadId, id -> ConcurrentHashMap.newKeySet()).add(clusterId);
+		return new PayloadStatus(payloadId, success, batchSize, clusterId);
+	}
+
+	// Sub-batches of one lane that did not fit it in backpressure mode; size is readable
+	// without the lock.
+	private static final class Overflow {
+		final ArrayDeque<SubBatch> batches = new ArrayDeque<>();
+		volatile int size;
+	}
+
+	private static final class OpenPayload {
+		final int attempt;
+		int nextChunk; // written by the submitting listener thread only
+		int batchCount;
+
+		OpenPayload(int attempt) {
+			this.attempt = attempt;
+		}
 	}
 
 	@PreDestroy
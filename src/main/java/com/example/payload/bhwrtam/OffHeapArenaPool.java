@@ -0,0 +1,184 @@
+package com.example.payload.bhwrtam;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Pooled direct buffers for payload.offheap.enabled. Each submitted payload (or chunk of one)
+// gets its own Arena that bump-allocates record values from fixed-size chunks. The arena is
+// reference counted, one reference per sub-batch stored in it, and hands every chunk back once
+// the last of them has run. Values larger than a chunk get a buffer of their own, which is dropped
+// rather than pooled. Allocation fails (returns -1) once maxBytes of direct memory are held,
+// and the caller keeps that sub-batch on the heap.
+class OffHeapArenaPool {
+    private final int chunkBytes;
+    private final long maxBytes;
+    private final int maxPooledChunks;
+    private final ConcurrentLinkedQueue<ByteBuffer> pooled = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pooledCount = new AtomicInteger();
+    private final AtomicLong reservedBytes = new AtomicLong(); // held by arenas or the pool
+    private final AtomicLong usedBytes = new AtomicLong(); // written by live arenas
+
+    OffHeapArenaPool(int chunkBytes, long maxBytes, int maxPooledChunks) {
+        if (chunkBytes <= 0) {
+            throw new IllegalArgumentException("chunkBytes must be positive: " + chunkBytes);
+        }
+        this.chunkBytes = chunkBytes;
+        this.maxBytes = maxBytes;
+        this.maxPooledChunks = maxPooledChunks;
+    }
+
+    Arena newArena() {
+        return new Arena();
+    }
+
+    long usedBytes() {
+        return usedBytes.get();
+    }
+
+    long reservedBytes() {
+        return reservedBytes.get();
+    }
+
+    OffHeapArenaPool registerMetrics(MeterRegistry registry) {
+        Gauge.builder("payload.offheap.used.bytes", usedBytes, AtomicLong::get)
+                .description("Off-heap bytes holding values of in-flight payloads")
+                .baseUnit("bytes")
+                .register(registry);
+        Gauge.builder("payload.offheap.reserved.bytes", reservedBytes, AtomicLong::get)
+                .description("Direct memory held by payload arenas and the chunk pool")
+                .baseUnit("bytes")
+                .register(registry);
+        return this;
+    }
+
+    private ByteBuffer acquire(int size) {
+        if (size <= chunkBytes) {
+            ByteBuffer chunk = pooled.poll();
+            if (chunk != null) {
+                pooledCount.decrementAndGet();
+                return chunk;
+            }
+            size = chunkBytes;
+        }
+        if (reservedBytes.addAndGet(size) > maxBytes) {
+            reservedBytes.addAndGet(-size);
+            return null;
+        }
+        return ByteBuffer.allocateDirect(size);
+    }
+
+    private void release(ByteBuffer buffer) {
+        if (buffer.capacity() == chunkBytes && pooledCount.incrementAndGet() <= maxPooledChunks) {
+            pooled.add(buffer);
+            return;
+        }
+        if (buffer.capacity() == chunkBytes) {
+            pooledCount.decrementAndGet();
+        }
+        reservedBytes.addAndGet(-buffer.capacity()); // freed by the buffer's cleaner once unreachable
+    }
+
+    // Written by the submitting thread and read by the workers. Buffers are only written at
+    // absolute indexes, so views never race on a shared position or limit. Starts with one
+    // reference, held by the submitting thread until it has stored every sub-batch.
+    final class Arena {
+        private final List<ByteBuffer> buffers = new ArrayList<>();
+        private ByteBuffer current;
+        private int currentIndex;
+        private int position;
+        private long used;
+        private int references = 1;
+
+        // Copies value into the arena and returns its address (buffer index << 32 | offset),
+        // or -1 if the pool is exhausted or the arena has already been freed.
+        synchronized long write(byte[] value) {
+            if (references == 0) {
+                return -1;
+            }
+            if (current == null || current.capacity() - position < value.length) {
+                ByteBuffer buffer = acquire(value.length);
+                if (buffer == null) {
+                    return -1;
+                }
+                buffers.add(buffer);
+                if (buffer.capacity() == chunkBytes) {
+                    current = buffer;
+                    currentIndex = buffers.size() - 1;
+                    position = 0;
+                } else {
+                    buffer.put(0, value); // dedicated buffer; the current chunk stays open
+                    record(value.length);
+                    return (long) (buffers.size() - 1) << 32;
+                }
+            }
+            current.put(position, value);
+            long address = (long) currentIndex << 32 | position;
+            position += value.length;
+            record(value.length);
+            return address;
+        }
+
+        private void record(int length) {
+            used += length;
+            usedBytes.addAndGet(length);
+        }
+
+        // Everything written from here on can be undone with rollback.
+        synchronized Mark mark() {
+            return new Mark(buffers.size(), current, currentIndex, position, used);
+        }
+
+        // Frees what was written since mark; nothing may view it.
+        synchronized void rollback(Mark mark) {
+            if (references == 0) {
+                return;
+            }
+            while (buffers.size() > mark.buffers) {
+                OffHeapArenaPool.this.release(buffers.remove(buffers.size() - 1));
+            }
+            current = mark.current;
+            currentIndex = mark.currentIndex;
+            position = mark.position;
+            usedBytes.addAndGet(mark.used - used);
+            used = mark.used;
+        }
+
+        // Read-only view of length bytes at address; no copy.
+        ByteBuffer view(long address, int length) {
+            ByteBuffer buffer;
+            synchronized (this) {
+                buffer = buffers.get((int) (address >>> 32));
+            }
+            int offset = (int) address;
+            return buffer.asReadOnlyBuffer().position(offset).limit(offset + length).slice();
+        }
+
+        synchronized void retain() {
+            if (references == 0) {
+                throw new IllegalStateException("Arena already freed");
+            }
+            references++;
+        }
+
+        // Drops one reference; the last one hands the buffers back.
+        synchronized void release() {
+            if (references == 0 || --references > 0) {
+                return;
+            }
+            usedBytes.addAndGet(-used);
+            buffers.forEach(OffHeapArenaPool.this::release);
+            buffers.clear();
+            current = null;
+        }
+    }
+
+    record Mark(int buffers, ByteBuffer current, int currentIndex, int position, long used) {
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.payload.bhwrtam;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Commits payload offsets only once their payloads have completed
+// (payload.listener.commitOnCompletion=true). Payloads finish out of order, so each stream -
+// a partition of one cluster's consumer - keeps its acknowledgments in delivery order and releases the finished prefix: an offset is
+// committed only when every offset before it on that stream has finished too. Acks are
+// queued to the container (AckMode.MANUAL) and committed on its consumer thread.
+@Component
+public class OffsetCommitTracker {
+
+    @Value("${payload.listener.commitOnCompletion:false}")
+    private boolean enabled;
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    private final ConcurrentMap<String, Stream> streams = new ConcurrentHashMap<>();
+    private final AtomicInteger pending = new AtomicInteger();
+
+    public OffsetCommitTracker() {
+    }
+
+    // For tests
+    public OffsetCommitTracker(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    @PostConstruct
+    void registerMetrics() {
+        Gauge.builder("payload.commit.pending", pending, AtomicInteger::get)
+                .description("Delivered payload records not yet committable")
+                .register(meterRegistry == null ? Metrics.globalRegistry : meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // Registers a delivery that is committable once complete() has been called parts times.
+    // Positions must increase per stream; a position at or below the last one means the stream
+    // was rewound (rebalance or seek), so its unfinished deliveries are dropped uncommitted and
+    // will be redelivered.
+    public Ticket register(String stream, long position, Acknowledgment ack, int parts) {
+        Stream s = streams.computeIfAbsent(stream, k -> new Stream());
+        Ticket ticket = new Ticket(s, ack, parts);
+        synchronized (s) {
+            if (position <= s.lastPosition) {
+                pending.addAndGet(-s.inOrder.size());
+                s.inOrder.forEach(t -> t.abandoned = true);
+                s.inOrder.clear();
+            }
+            s.lastPosition = position;
+            s.inOrder.add(ticket);
+            pending.incrementAndGet();
+        }
+        if (parts == 0) {
+            release(s);
+        }
+        return ticket;
+    }
+
+    private void release(Stream s) {
+        synchronized (s) {
+            Ticket head;
+            while ((head = s.inOrder.peek()) != null && head.remaining.get() == 0) {
+                s.inOrder.poll();
+                pending.decrementAndGet();
+                head.ack.acknowledge();
+            }
+        }
+    }
+
+    public int pending() {
+        return pending.get();
+    }
+
+    private static final class Stream {
+        final ArrayDeque<Ticket> inOrder = new ArrayDeque<>();
+        long lastPosition = -1;
+    }
+
+    public final class Ticket {
+        private final Stream stream;
+        private final Acknowledgment ack;
+        private final AtomicInteger remaining;
+        private volatile boolean abandoned;
+
+        private Ticket(Stream stream, Acknowledgment ack, int parts) {
+            this.stream = stream;
+            this.ack = ack;
+            this.remaining = new AtomicInteger(parts);
+        }
+
+        // Marks one part finished; may be called from any thread.
+        public void complete() {
+            if (remaining.decrementAndGet() == 0 && !abandoned) {
+                release(stream);
+            }
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.payload.bhwrtam;
+
+import com.example.payload.common.GroupedTSValues;
+import com.example.payload.common.PayloadChunks;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+
+public class Payload {
+    public String payloadId;
+    public GroupedTSValues records;
+    public Runnable onComplete; // optional, run once the payload's status has been handed off
+    public int chunk = -1; // sequence number for one chunk of a chunked payload, -1 = whole payload
+    public boolean lastChunk;
+
+    public Payload(String payloadId, GroupedTSValues records) {
+        this(payloadId, records, null);
+    }
+
+    public Payload(String payloadId, GroupedTSValues records, Runnable onComplete) {
+        this.payloadId = payloadId;
+        this.records = records;
+        this.onComplete = onComplete;
+    }
+
+    // Picks up the chunk position from the record headers, if the payload was sent chunked.
+    public static Payload of(String payloadId, ConsumerRecord<String, GroupedTSValues> record, Runnable onComplete) {
+        Payload payload = new Payload(payloadId, record.value(), onComplete);
+        payload.chunk = PayloadChunks.sequence(record.headers());
+        payload.lastChunk = PayloadChunks.isLast(record.headers());
+        return payload;
+    }
+}
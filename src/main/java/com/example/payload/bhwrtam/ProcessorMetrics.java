@@ -0,0 +1,73 @@
+package com.example.payload.bhwrtam;
+
+import com.example.payload.common.BoundedStore;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+// Meters for the sub-batch pipeline. Tagged meters are cached so the hot path only does a
+// map lookup per payload, not a registry lookup per sub-batch.
+public class ProcessorMetrics {
+    private final MeterRegistry registry;
+    private final Timer enqueueWait;
+    private final Timer subBatchDuration;
+    private final Timer payloadDuration;
+    private final ConcurrentMap<String, Counter[]> subBatchOutcomes = new ConcurrentHashMap<>();
+
+    public ProcessorMetrics(MeterRegistry registry) {
+        this.registry = registry == null ? Metrics.globalRegistry : registry;
+        this.enqueueWait = Timer.builder("payload.enqueue.wait")
+                .description("Time a submitting thread waits to hand a sub-batch to a lane")
+                .register(this.registry);
+        this.subBatchDuration = Timer.builder("payload.subbatch.duration")
+                .description("processBatch duration")
+                .register(this.registry);
+        this.payloadDuration = Timer.builder("payload.e2e.duration")
+                .description("Payload submit to completion")
+                .register(this.registry);
+    }
+
+    void registerLanes(List<SubBatchLane> lanes) {
+        for (int i = 0; i < lanes.size(); i++) {
+            SubBatchLane lane = lanes.get(i);
+            Gauge.builder("payload.lane.depth", lane, SubBatchLane::size)
+                    .description("Sub-batches waiting in the lane")
+                    .tag("lane", String.valueOf(i))
+                    .register(registry);
+        }
+    }
+
+    <K, V> BoundedStore<K, V> registerStore(BoundedStore<K, V> store, String name) {
+        return store.registerMetrics(registry, name);
+    }
+
+    OffHeapArenaPool registerOffHeap(OffHeapArenaPool pool) {
+        return pool.registerMetrics(registry);
+    }
+
+    Timer enqueueWait() {
+        return enqueueWait;
+    }
+
+    Timer subBatchDuration() {
+        return subBatchDuration;
+    }
+
+    Timer payloadDuration() {
+        return payloadDuration;
+    }
+
+    // [0] = success, [1] = failure
+    Counter[] subBatchOutcomes(String clusterId) {
+        return subBatchOutcomes.computeIfAbsent(clusterId, cluster -> new Counter[]{
+                Counter.builder("payload.subbatch.completed").tag("cluster", cluster).tag("outcome", "success").register(registry),
+                Counter.builder("payload.subbatch.completed").tag("cluster", cluster).tag("outcome", "failure").register(registry)
+        });
+    }
+}
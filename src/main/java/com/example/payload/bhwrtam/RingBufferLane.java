@@ -0,0 +1,175 @@
+package com.example.payload.bhwrtam;
+
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Preallocated, power-of-two ring of slots with a per-slot sequence number (Vyukov's bounded
+// queue): offer and poll claim a slot with one CAS and allocate nothing. Consumers are always
+// allowed to compete (owner worker plus stealers); the single-producer variant skips the
+// producer CAS and must only be used when exactly one thread submits.
+public class RingBufferLane implements SubBatchLane {
+    private static final long PARK_NANOS = 50_000L;
+
+    private final SubBatch[] buffer;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final boolean singleProducer;
+    private final WaitStrategy waitStrategy;
+    private final AtomicLong producerCursor = new AtomicLong();
+    private final AtomicLong consumerCursor = new AtomicLong();
+
+    // only used by WaitStrategy.BLOCK
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private final AtomicInteger waiters = new AtomicInteger();
+
+    public RingBufferLane(int requestedCapacity, boolean singleProducer, WaitStrategy waitStrategy) {
+        int capacity = ceilingPowerOfTwo(requestedCapacity);
+        this.buffer = new SubBatch[capacity];
+        this.sequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            sequences.set(i, i);
+        }
+        this.mask = capacity - 1;
+        this.singleProducer = singleProducer;
+        this.waitStrategy = waitStrategy;
+    }
+
+    @Override
+    public boolean offer(SubBatch batch) {
+        long pos = producerCursor.get();
+        int slot;
+        while (true) {
+            slot = (int) (pos & mask);
+            long diff = sequences.get(slot) - pos;
+            if (diff == 0) {
+                if (singleProducer) {
+                    producerCursor.lazySet(pos + 1);
+                    break;
+                }
+                if (producerCursor.compareAndSet(pos, pos + 1)) {
+                    break;
+                }
+            } else if (diff < 0) {
+                return false; // full
+            }
+            pos = producerCursor.get();
+        }
+        buffer[slot] = batch;
+        sequences.lazySet(slot, pos + 1); // publishes the slot to consumers
+        signal(notEmpty);
+        return true;
+    }
+
+    @Override
+    public SubBatch poll() {
+        long pos = consumerCursor.get();
+        int slot;
+        while (true) {
+            slot = (int) (pos & mask);
+            long diff = sequences.get(slot) - (pos + 1);
+            if (diff == 0) {
+                if (consumerCursor.compareAndSet(pos, pos + 1)) {
+                    break;
+                }
+            } else if (diff < 0) {
+                return null; // empty
+            }
+            pos = consumerCursor.get();
+        }
+        SubBatch batch = buffer[slot];
+        buffer[slot] = null;
+        sequences.lazySet(slot, pos + mask + 1); // hands the slot back to producers
+        signal(notFull);
+        return batch;
+    }
+
+    @Override
+    public void put(SubBatch batch) throws InterruptedException {
+        while (!offer(batch)) {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            await(notFull, Long.MAX_VALUE, true);
+        }
+    }
+
+    @Override
+    public SubBatch poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        SubBatch batch;
+        while ((batch = poll()) == null) {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return null;
+            }
+            await(notEmpty, remaining, false);
+        }
+        return batch;
+    }
+
+    @Override
+    public int size() {
+        long size = producerCursor.get() - consumerCursor.get();
+        return (int) Math.max(0, Math.min(size, buffer.length));
+    }
+
+    @Override
+    public int capacity() {
+        return buffer.length;
+    }
+
+    private void await(Condition condition, long remainingNanos, boolean waitingForSpace) throws InterruptedException {
+        switch (waitStrategy) {
+            case BUSY_SPIN -> Thread.onSpinWait();
+            case YIELD -> Thread.yield();
+            case PARK -> LockSupport.parkNanos(Math.min(remainingNanos, PARK_NANOS));
+            case BLOCK -> {
+                lock.lock();
+                try {
+                    waiters.incrementAndGet();
+                    // re-check under the lock so a signal between the failed attempt and here is not lost
+                    boolean stillWaiting = waitingForSpace ? size() >= buffer.length : size() == 0;
+                    if (stillWaiting) {
+                        condition.awaitNanos(Math.min(remainingNanos, TimeUnit.MILLISECONDS.toNanos(100)));
+                    }
+                } finally {
+                    waiters.decrementAndGet();
+                    lock.unlock();
+                }
+            }
+        }
+    }
+
+    private void signal(Condition condition) {
+        if (waitStrategy != WaitStrategy.BLOCK) {
+            return;
+        }
+        VarHandle.fullFence(); // order the slot publication before reading the waiter count
+        if (waiters.get() > 0) {
+            lock.lock();
+            try {
+                condition.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private static int ceilingPowerOfTwo(int value) {
+        if (value <= 1) {
+            return 1;
+        }
+        return Integer.highestOneBit(value - 1) << 1;
+    }
+}
@@ -1,42 +1,179 @@
 package com.example.payload.bhwrtam;
 
-import reactor.core.publisher.Sinks;
+import io.micrometer.core.instrument.Counter;
 
-import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
 public class StatusTracker {
-    private final ConcurrentMap<String, List<SubBatchStatus>> tracker = new ConcurrentHashMap<>();
-    private final Sinks.Many<String> onCompleteSink;
-    private final Set<String> emitted = Collections.newSetFromMap(new ConcurrentHashMap<>());
+    private final ConcurrentMap<String, PayloadState> tracker = new ConcurrentHashMap<>();
+    private final AtomicInteger attempts = new AtomicInteger();
+    private final Consumer<String> onComplete;
+    private final ProcessorMetrics metrics;
 
-    public StatusTracker(Sinks.Many<String> onCompleteSink) {
-        this.onCompleteSink = onCompleteSink;
+    public StatusTracker(Consumer<String> onComplete) {
+        this(onComplete, new ProcessorMetrics(null));
+    }
+
+    public StatusTracker(Consumer<String> onComplete, ProcessorMetrics metrics) {
+        this.onComplete = onComplete;
+        this.metrics = metrics;
+    }
+
+    // Id for one submission of a payload. A payload id submitted again (redelivered) starts a
+    // new attempt, and updates from sub-batches of the superseded one are ignored.
+    public int nextAttempt() {
+        return attempts.incrementAndGet();
     }
 
     public void init(String payloadId, int batchCount) {
-        tracker.put(payloadId, Collections.synchronizedList(new ArrayList<>(Collections.nCopies(batchCount, null))));
-        emitted.remove(payloadId); // reset if reused
+        init(payloadId, batchCount, nextAttempt());
+    }
+
+    public void init(String payloadId, int batchCount, int attempt) {
+        Counter[] outcomes = metrics.subBatchOutcomes(clusterOf(payloadId));
+        tracker.put(payloadId, new PayloadState(attempt, batchCount, outcomes)); // replaces state if reused
+        if (batchCount == 0) {
+            onComplete.accept(payloadId); // nothing to wait for
+        }
+    }
+
+    // Starts a chunked payload whose sub-batch count is not known yet. It holds one extra
+    // count, released by seal, so it cannot complete between chunks.
+    public void open(String payloadId) {
+        open(payloadId, nextAttempt());
+    }
+
+    public void open(String payloadId, int attempt) {
+        Counter[] outcomes = metrics.subBatchOutcomes(clusterOf(payloadId));
+        tracker.put(payloadId, new PayloadState(attempt, 1, outcomes));
+    }
+
+    // Adds the sub-batches of a newly arrived chunk; call before they are submitted.
+    public void extend(String payloadId, int batchCount) {
+        PayloadState state = tracker.get(payloadId);
+        if (state != null) {
+            state.done.grow(batchCount);
+            state.remaining.addAndGet(batchCount);
+        }
+    }
+
+    // The last chunk has arrived, so the sub-batch count is final.
+    public void seal(String payloadId) {
+        PayloadState state = tracker.get(payloadId);
+        if (state != null && state.remaining.decrementAndGet() == 0) {
+            onComplete.accept(payloadId);
+        }
+    }
+
+    // Gives up on the missing chunks: the payload completes as failed once its submitted
+    // sub-batches have finished.
+    public void abort(String payloadId) {
+        PayloadState state = tracker.get(payloadId);
+        if (state != null) {
+            state.failed = true;
+            seal(payloadId);
+        }
     }
 
-    public synchronized void update(String payloadId, int index, SubBatchStatus status) {
-        List<SubBatchStatus> statuses = tracker.get(payloadId);
-        if (statuses == null) return; // already cleaned up
-        statuses.set(index, status);
-        boolean complete = statuses.stream().noneMatch(Objects::isNull);
-        if (complete && emitted.add(payloadId)) {
-            onCompleteSink.tryEmitNext(payloadId);
+    // Update for the current attempt.
+    public void update(String payloadId, int index, SubBatchStatus status) {
+        PayloadState state = tracker.get(payloadId);
+        if (state != null) {
+            update(payloadId, state.attempt, index, status);
+        }
+    }
+
+    // Lock-free and O(1): the worker whose decrement reaches zero is the only one that emits.
+    // Only the first update per index of the current attempt counts, so neither a duplicated
+    // sub-batch nor one left over from a superseded attempt can complete the payload early.
+    public void update(String payloadId, int attempt, int index, SubBatchStatus status) {
+        PayloadState state = tracker.get(payloadId);
+        if (state == null) return; // already cleaned up
+        if (state.attempt != attempt || !state.done.setFirst(index)) return;
+        if (status != SubBatchStatus.SUCCESS) {
+            state.failed = true; // published to the completing thread by the decrement below
+            state.outcomes[1].increment();
+        } else {
+            state.outcomes[0].increment();
+        }
+        if (state.remaining.decrementAndGet() == 0) {
+            onComplete.accept(payloadId);
         }
     }
 
     public boolean isSuccessful(String payloadId) {
-        List<SubBatchStatus> list = tracker.get(payloadId);
-        return list != null && list.stream().allMatch(s -> s == SubBatchStatus.SUCCESS);
+        PayloadState state = tracker.get(payloadId);
+        return state != null && state.remaining.get() <= 0 && !state.failed;
+    }
+
+    // Nanoseconds since init, or -1 if the payload is not tracked.
+    public long elapsedNanos(String payloadId) {
+        PayloadState state = tracker.get(payloadId);
+        return state == null ? -1 : System.nanoTime() - state.startNanos;
     }
 
     public void remove(String payloadId) {
         tracker.remove(payloadId);
-        emitted.remove(payloadId);
     }
-}
\ No newline at end of file
+
+    private static String clusterOf(String payloadId) {
+        int sep = payloadId.indexOf("::");
+        return sep < 0 ? "cluster-unknown" : payloadId.substring(sep + 2);
+    }
+
+    private static final class PayloadState {
+        final int attempt;
+        final AtomicInteger remaining;
+        final Counter[] outcomes;
+        final long startNanos = System.nanoTime();
+        final IndexBits done = new IndexBits();
+        volatile boolean failed;
+
+        PayloadState(int attempt, int batchCount, Counter[] outcomes) {
+            this.attempt = attempt;
+            this.remaining = new AtomicInteger(batchCount);
+            this.outcomes = outcomes;
+            done.grow(batchCount);
+        }
+    }
+
+    // Completed sub-batch indexes, one word per 64. Grown only by the submitting thread before
+    // the new indexes are handed out; the words are shared with the grown copy, so a concurrent
+    // setFirst on the old array is not lost.
+    private static final class IndexBits {
+        private volatile AtomicLong[] words = new AtomicLong[0];
+        private int capacity;
+
+        void grow(int count) {
+            capacity += count;
+            AtomicLong[] current = words;
+            int needed = (capacity + 63) >>> 6;
+            if (needed > current.length) {
+                AtomicLong[] grown = Arrays.copyOf(current, needed);
+                for (int i = current.length; i < needed; i++) {
+                    grown[i] = new AtomicLong();
+                }
+                words = grown;
+            }
+        }
+
+        // True for the first call with index; false for repeats and unknown indexes.
+        boolean setFirst(int index) {
+            AtomicLong[] current = words;
+            if (index < 0 || (index >>> 6) >= current.length) return false;
+            AtomicLong word = current[index >>> 6];
+            long mask = 1L << index; // shift uses the low six bits
+            long bits;
+            do {
+                bits = word.get();
+                if ((bits & mask) != 0) return false;
+            } while (!word.compareAndSet(bits, bits | mask));
+            return true;
+        }
+    }
+}
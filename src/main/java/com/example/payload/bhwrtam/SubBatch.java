@@ -1,19 +1,57 @@
 package com.example.payload.bhwrtam;
 
+import com.example.payload.common.KeyDictionary;
 import com.example.payload.common.TSValues;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 
 public class SubBatch {
     public String payloadId;
     public int index;
     public String key;
+    public int keyId; // KeyDictionary id, or KeyDictionary.NO_ID
+    public int chunk; // position within a split key group, 0 when the key was not split
+    public int attempt; // StatusTracker attempt of the submission it belongs to, 0 if untracked
     public List<TSValues> records;
 
     public SubBatch(String payloadId, int index, String key, List<TSValues> records) {
+        this(payloadId, index, key, KeyDictionary.NO_ID, 0, records);
+    }
+
+    public SubBatch(String payloadId, int index, String key, int keyId, int chunk, List<TSValues> records) {
+        this(payloadId, 0, index, key, keyId, chunk, records);
+    }
+
+    public SubBatch(String payloadId, int attempt, int index, String key, int keyId, int chunk, List<TSValues> records) {
         this.payloadId = payloadId;
+        this.attempt = attempt;
         this.index = index;
         this.key = key;
+        this.keyId = keyId;
+        this.chunk = chunk;
         this.records = records;
     }
+
+    // Value of record i as UTF-8: a zero-copy view into the payload's off-heap arena when
+    // payload.offheap.enabled placed it there, otherwise encoded from the heap string.
+    public ByteBuffer valueBytes(int i) {
+        if (records instanceof ArenaRecords arena) {
+            return arena.valueBytes(i);
+        }
+        String value = records.get(i).value;
+        return value == null ? null : ByteBuffer.wrap(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public boolean isOffHeap() {
+        return records instanceof ArenaRecords;
+    }
+
+    // Called once the sub-batch has run: its off-heap values are not read any more.
+    void release() {
+        if (records instanceof ArenaRecords arena) {
+            arena.release();
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,21 @@
+package com.example.payload.bhwrtam;
+
+import java.util.concurrent.TimeUnit;
+
+// A bounded FIFO between the submitting listener threads and one lane's worker (plus any
+// work-stealing workers). Implementations must allow several consumers.
+public interface SubBatchLane {
+
+    // Blocks while the lane is full.
+    void put(SubBatch batch) throws InterruptedException;
+
+    boolean offer(SubBatch batch);
+
+    SubBatch poll();
+
+    SubBatch poll(long timeout, TimeUnit unit) throws InterruptedException;
+
+    int size();
+
+    int capacity();
+}
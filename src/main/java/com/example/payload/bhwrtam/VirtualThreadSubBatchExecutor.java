@@ -0,0 +1,150 @@
+package com.example.payload.bhwrtam;
+
+import com.example.payload.common.KeyDictionary;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+// Runs each sub-batch on its own virtual thread. Sub-batches of the same key (and chunk, for
+// split keys) are chained so they run one after another in submission order. At most
+// maxInFlight run at once; a task takes its permit when it starts, so sub-batches waiting on
+// their chain do not hold one. submit blocks once maxQueued are submitted and unfinished, like
+// a full lane does; submitOrDefer instead parks the excess and submits it as tasks finish.
+class VirtualThreadSubBatchExecutor {
+    private final ExecutorService executor;
+    private final Semaphore running;
+    private final Semaphore queued;
+    private final int maxQueued;
+    private final Consumer<SubBatch> task;
+    private final ConcurrentMap<Object, CompletableFuture<Void>> tails = new ConcurrentHashMap<>();
+    private final ArrayDeque<SubBatch> deferred = new ArrayDeque<>(); // guarded by itself
+    private volatile int deferredCount;
+
+    VirtualThreadSubBatchExecutor(int maxInFlight, int maxQueued, Consumer<SubBatch> task) {
+        this(newVirtualThreadPerTaskExecutor(), maxInFlight, maxQueued, task);
+    }
+
+    // For tests on JDKs without virtual threads; any executor that runs every task will do.
+    VirtualThreadSubBatchExecutor(ExecutorService executor, int maxInFlight, int maxQueued, Consumer<SubBatch> task) {
+        this.executor = executor;
+        this.running = new Semaphore(maxInFlight);
+        this.queued = new Semaphore(maxQueued);
+        this.maxQueued = maxQueued;
+        this.task = task;
+    }
+
+    static boolean isSupported() {
+        try {
+            Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    void submit(SubBatch batch) throws InterruptedException {
+        queued.acquire();
+        schedule(batch);
+    }
+
+    // Never blocks: without a free slot, or while earlier sub-batches are still deferred, the
+    // batch waits in submission order until running tasks finish.
+    void submitOrDefer(SubBatch batch) {
+        synchronized (deferred) {
+            if (deferred.isEmpty() && queued.tryAcquire()) {
+                schedule(batch);
+                return;
+            }
+            deferred.add(batch);
+            deferredCount = deferred.size();
+        }
+    }
+
+    private void drainDeferred() {
+        if (deferredCount == 0) {
+            return;
+        }
+        synchronized (deferred) {
+            while (!deferred.isEmpty() && queued.tryAcquire()) {
+                schedule(deferred.poll());
+            }
+            deferredCount = deferred.size();
+        }
+    }
+
+    // The caller holds a queued permit for batch.
+    private void schedule(SubBatch batch) {
+        Runnable run = () -> {
+            try {
+                running.acquireUninterruptibly();
+                try {
+                    task.accept(batch);
+                } finally {
+                    running.release();
+                }
+            } finally {
+                queued.release();
+                drainDeferred();
+            }
+        };
+        Object chainKey = chainKey(batch);
+        try {
+            // handle, not thenRun: a sub-batch that threw must not skip the rest of its chain
+            CompletableFuture<Void> next = tails.compute(chainKey, (key, tail) -> tail == null
+                    ? CompletableFuture.runAsync(run, executor)
+                    : tail.handleAsync((r, e) -> {
+                        run.run();
+                        return null;
+                    }, executor));
+            next.whenComplete((r, e) -> tails.remove(chainKey, next)); // drop idle keys
+        } catch (RejectedExecutionException e) {
+            queued.release(); // shut down; the task never runs
+            throw e;
+        }
+    }
+
+    // Submitted sub-batches that have not finished, running, waiting or deferred.
+    int inFlight() {
+        return maxQueued - queued.availablePermits() + deferredCount;
+    }
+
+    void shutdown() {
+        executor.shutdownNow();
+        try {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Dictionary ids are dense ints, so id and chunk pack into one long; keys past the
+    // dictionary bound chain on the key string itself.
+    private static Object chainKey(SubBatch batch) {
+        if (batch.keyId != KeyDictionary.NO_ID) {
+            return (long) batch.keyId << 32 | batch.chunk;
+        }
+        return batch.chunk == 0 ? batch.key : new SplitKey(batch.key, batch.chunk);
+    }
+
+    private record SplitKey(String key, int chunk) {
+    }
+
+    // Looked up reflectively so the code still compiles for the Java 17 target. Callers check
+    // isSupported first; there is no platform-thread fallback here, since one thread per
+    // sub-batch is only cheap with virtual threads.
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Virtual threads need Java 21+", e);
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package com.example.payload.bhwrtam;
+
+// How a RingBufferLane waits for space (put) or for data (timed poll).
+public enum WaitStrategy {
+    BUSY_SPIN, // lowest latency, burns a core per waiting thread
+    YIELD,     // spin, but give the core away between attempts
+    PARK,      // sleep in short parkNanos slices
+    BLOCK      // wait on a condition signalled by the other side
+}
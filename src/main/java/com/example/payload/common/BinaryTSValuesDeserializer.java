@@ -0,0 +1,107 @@
+package com.example.payload.common;
+
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.serialization.Deserializer;
+
+import java.nio.charset.StandardCharsets;
+
+// Reads the BinaryTSValuesSerializer layout straight into key groups. Message dictionary
+// entries are interned once per message; records then refer to them by index.
+public class BinaryTSValuesDeserializer implements Deserializer<GroupedTSValues> {
+    private final KeyDictionary dictionary;
+
+    public BinaryTSValuesDeserializer() {
+        this(new KeyDictionary());
+    }
+
+    public BinaryTSValuesDeserializer(KeyDictionary dictionary) {
+        this.dictionary = dictionary;
+    }
+
+    @Override
+    public GroupedTSValues deserialize(String topic, byte[] data) {
+        if (data == null) {
+            return null;
+        }
+        Reader in = new Reader(data, topic);
+        byte version = in.readByte();
+        if (version != BinaryTSValuesSerializer.VERSION) {
+            throw new SerializationException("Unsupported binary TSValues version " + version);
+        }
+        // counts are checked against the bytes left (at least one per key, two per record)
+        // before anything is allocated, so a corrupt count cannot trigger a huge allocation
+        KeyDictionary.Key[] keys = new KeyDictionary.Key[in.readCount(1)];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = dictionary.intern(in.readString(in.readVarint()));
+        }
+        int recordCount = in.readCount(2);
+        GroupedTSValues grouped = new GroupedTSValues();
+        for (int i = 0; i < recordCount; i++) {
+            int keyIndex = in.readVarint();
+            if (keyIndex < 0 || keyIndex >= keys.length) {
+                throw in.corrupt("key index " + keyIndex + " of " + keys.length);
+            }
+            KeyDictionary.Key key = keys[keyIndex];
+            TSValues record = new TSValues();
+            record.key = key.value;
+            int valueLength = in.readVarint();
+            record.value = valueLength == 0 ? null : in.readString(valueLength - 1);
+            grouped.add(key, record);
+        }
+        return grouped;
+    }
+
+    // Every read is bounds-checked and fails with SerializationException on malformed input.
+    private static final class Reader {
+        private final byte[] data;
+        private final String topic;
+        private int pos;
+
+        Reader(byte[] data, String topic) {
+            this.data = data;
+            this.topic = topic;
+        }
+
+        byte readByte() {
+            if (pos >= data.length) {
+                throw corrupt("truncated at offset " + pos);
+            }
+            return data[pos++];
+        }
+
+        int readVarint() {
+            int value = 0;
+            for (int shift = 0; shift < 32; shift += 7) {
+                byte b = readByte();
+                value |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw corrupt("malformed varint at offset " + pos);
+        }
+
+        // A count of items that take at least minBytes each.
+        int readCount(int minBytes) {
+            int count = readVarint();
+            if (count < 0 || count > (data.length - pos) / minBytes) {
+                throw corrupt("count " + count + " exceeds the " + (data.length - pos) + " bytes left");
+            }
+            return count;
+        }
+
+        String readString(int length) {
+            if (length < 0 || length > data.length - pos) {
+                throw corrupt("string length " + length + " at offset " + pos + " exceeds the "
+                        + (data.length - pos) + " bytes left");
+            }
+            String s = new String(data, pos, length, StandardCharsets.UTF_8);
+            pos += length;
+            return s;
+        }
+
+        SerializationException corrupt(String detail) {
+            return new SerializationException("Truncated or corrupt binary TSValues from topic " + topic + ": " + detail);
+        }
+    }
+}
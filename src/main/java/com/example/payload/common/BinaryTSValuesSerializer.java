@@ -0,0 +1,116 @@
+package com.example.payload.common;
+
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.Serializer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+// Compact alternative to JSON for TSValues[]. Layout (varints are unsigned LEB128):
+//   byte    format version
+//   varint  key count, then per key: varint byte length + UTF-8 bytes
+//   varint  record count, then per record: varint key index, varint (value length + 1, 0 = null) + UTF-8 bytes
+// Each distinct key is written once per message; records refer to it by index.
+public class BinaryTSValuesSerializer implements Serializer<TSValues[]> {
+    public static final String CONTENT_TYPE_HEADER = "content-type";
+    public static final String CONTENT_TYPE = "application/x-tsvalues-binary";
+    static final byte VERSION = 1;
+    private static final byte[] CONTENT_TYPE_BYTES = CONTENT_TYPE.getBytes(StandardCharsets.UTF_8);
+
+    @Override
+    public byte[] serialize(String topic, Headers headers, TSValues[] data) {
+        if (data == null) {
+            return null;
+        }
+        headers.remove(CONTENT_TYPE_HEADER);
+        headers.add(CONTENT_TYPE_HEADER, CONTENT_TYPE_BYTES);
+        return serialize(topic, data);
+    }
+
+    @Override
+    public byte[] serialize(String topic, TSValues[] data) {
+        if (data == null) {
+            return null;
+        }
+        Map<String, Integer> keyIndex = new HashMap<>();
+        int[] recordKeys = new int[data.length];
+        Writer keys = new Writer(64);
+        for (int i = 0; i < data.length; i++) {
+            String key = data[i].key;
+            if (key == null) {
+                throw new SerializationException("TSValues.key must not be null");
+            }
+            Integer idx = keyIndex.get(key);
+            if (idx == null) {
+                idx = keyIndex.size();
+                keyIndex.put(key, idx);
+                keys.writeBytes(key.getBytes(StandardCharsets.UTF_8));
+            }
+            recordKeys[i] = idx;
+        }
+        Writer out = new Writer(keys.size + data.length * 16 + 16);
+        out.write(VERSION);
+        out.writeVarint(keyIndex.size());
+        out.write(keys.buf, 0, keys.size);
+        out.writeVarint(data.length);
+        for (int i = 0; i < data.length; i++) {
+            out.writeVarint(recordKeys[i]);
+            String value = data[i].value;
+            if (value == null) {
+                out.writeVarint(0);
+            } else {
+                byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                out.writeVarint(bytes.length + 1);
+                out.write(bytes, 0, bytes.length);
+            }
+        }
+        return out.toByteArray();
+    }
+
+    private static final class Writer {
+        private byte[] buf;
+        private int size;
+
+        Writer(int initialCapacity) {
+            buf = new byte[Math.max(16, initialCapacity)];
+        }
+
+        void write(byte b) {
+            ensure(1);
+            buf[size++] = b;
+        }
+
+        void write(byte[] bytes, int off, int len) {
+            ensure(len);
+            System.arraycopy(bytes, off, buf, size, len);
+            size += len;
+        }
+
+        void writeBytes(byte[] bytes) {
+            writeVarint(bytes.length);
+            write(bytes, 0, bytes.length);
+        }
+
+        void writeVarint(int value) {
+            ensure(5);
+            while ((value & ~0x7F) != 0) {
+                buf[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buf[size++] = (byte) value;
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buf, size);
+        }
+
+        private void ensure(int extra) {
+            if (size + extra > buf.length) {
+                buf = Arrays.copyOf(buf, Math.max(buf.length * 2, size + extra));
+            }
+        }
+    }
+}
@@ -0,0 +1,291 @@
+package com.example.payload.common;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+// Concurrent map for per-payload bookkeeping that must not grow with the life of the process.
+// Entries leave in insertion order once there are more than maxEntries of them, or once they
+// are older than ttl. The age counts from first insertion; updating a live entry keeps its slot.
+// Eviction runs on the writing thread, one writer at a time, so the bound can be overshot by
+// the number of concurrent writers for a moment.
+public class BoundedStore<K, V> {
+
+    public enum Cause { SIZE, EXPIRED }
+
+    @FunctionalInterface
+    public interface EvictionListener<K, V> {
+        void onEviction(K key, V value, Cause cause);
+    }
+
+    private final ConcurrentHashMap<K, Entry<K, V>> map = new ConcurrentHashMap<>();
+    // Insertion order; entries removed explicitly stay here, marked dead, until evicted or swept.
+    private final ConcurrentLinkedQueue<Entry<K, V>> order = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger live = new AtomicInteger();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicLong sizeEvictions = new AtomicLong();
+    private final AtomicLong expiredEvictions = new AtomicLong();
+    private final ReentrantLock evictLock = new ReentrantLock();
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final EvictionListener<K, V> listener;
+
+    public BoundedStore(int maxEntries, Duration ttl) {
+        this(maxEntries, ttl, null);
+    }
+
+    // A zero or negative ttl disables time-based eviction.
+    public BoundedStore(int maxEntries, Duration ttl, EvictionListener<K, V> listener) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("maxEntries must be positive: " + maxEntries);
+        }
+        this.maxEntries = maxEntries;
+        this.ttlNanos = ttl == null || ttl.isNegative() || ttl.isZero() ? 0 : ttl.toNanos();
+        this.listener = listener;
+    }
+
+    public V get(K key) {
+        Entry<K, V> entry = map.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (expired(entry, System.nanoTime())) {
+            evicted(entry, Cause.EXPIRED); // the queue slot goes on the next evict pass
+            return null;
+        }
+        return entry.value;
+    }
+
+    public void put(K key, V value) {
+        Entry<K, V> created = new Entry<>(key, value, System.nanoTime());
+        Entry<K, V> entry = map.computeIfAbsent(key, k -> created);
+        if (entry == created) {
+            added(entry);
+        } else {
+            entry.value = value;
+        }
+    }
+
+    // Inserts an entry that was first stored age ago, e.g. when reloading persisted state, so
+    // it expires on its original schedule. Keeps the live value's age if key is present.
+    public void put(K key, V value, Duration age) {
+        Entry<K, V> created = new Entry<>(key, value, System.nanoTime() - Math.max(0, age.toNanos()));
+        Entry<K, V> entry = map.computeIfAbsent(key, k -> created);
+        if (entry == created) {
+            added(entry);
+        } else {
+            entry.value = value;
+        }
+    }
+
+    // Time since key was first stored, or null if it is not present.
+    public Duration age(K key) {
+        Entry<K, V> entry = map.get(key);
+        return entry == null ? null : Duration.ofNanos(System.nanoTime() - entry.createdNanos);
+    }
+
+    // Returns the current value, or null if this call inserted one.
+    public V putIfAbsent(K key, V value) {
+        Entry<K, V> created = new Entry<>(key, value, System.nanoTime());
+        Entry<K, V> entry = map.computeIfAbsent(key, k -> created);
+        if (entry == created) {
+            added(entry);
+            return null;
+        }
+        return entry.value;
+    }
+
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> mapping) {
+        Entry<K, V> entry = map.get(key);
+        if (entry != null) {
+            return entry.value;
+        }
+        Entry<K, V> created = new Entry<>(key, mapping.apply(key), System.nanoTime());
+        entry = map.computeIfAbsent(key, k -> created);
+        if (entry == created) {
+            added(entry);
+        }
+        return entry.value;
+    }
+
+    // Stores value as a new entry, so its age restarts, and returns the value it replaced. The
+    // swap is one step: a concurrent reader sees either the old value or the new one.
+    public V replace(K key, V value) {
+        Entry<K, V> created = new Entry<>(key, value, System.nanoTime());
+        @SuppressWarnings("unchecked")
+        Entry<K, V>[] replaced = new Entry[1];
+        map.compute(key, (k, entry) -> {
+            replaced[0] = entry;
+            return created;
+        });
+        Entry<K, V> previous = replaced[0];
+        if (previous != null) {
+            previous.dead = true; // its queue slot goes on a later evict pass
+            live.decrementAndGet();
+        }
+        added(created);
+        return previous == null ? null : previous.value;
+    }
+
+    public V remove(K key) {
+        Entry<K, V> entry = map.remove(key);
+        if (entry == null) {
+            return null;
+        }
+        entry.dead = true;
+        live.decrementAndGet();
+        return entry.value;
+    }
+
+    public int size() {
+        return live.get();
+    }
+
+    public int maxEntries() {
+        return maxEntries;
+    }
+
+    // Keys in insertion order.
+    public List<K> keys() {
+        List<K> keys = new ArrayList<>(live.get());
+        for (Entry<K, V> entry : order) {
+            if (!entry.dead) {
+                keys.add(entry.key);
+            }
+        }
+        return keys;
+    }
+
+    // Point-in-time copy in insertion order.
+    public Map<K, V> snapshot() {
+        Map<K, V> copy = new LinkedHashMap<>();
+        for (Entry<K, V> entry : order) {
+            if (!entry.dead) {
+                copy.put(entry.key, entry.value);
+            }
+        }
+        return copy;
+    }
+
+    public void clear() {
+        evictLock.lock();
+        try {
+            for (Entry<K, V> entry; (entry = order.poll()) != null; ) {
+                queued.decrementAndGet();
+                if (!entry.dead && map.remove(entry.key, entry)) {
+                    entry.dead = true;
+                    live.decrementAndGet();
+                }
+            }
+        } finally {
+            evictLock.unlock();
+        }
+    }
+
+    public long evictions() {
+        return sizeEvictions.get() + expiredEvictions.get();
+    }
+
+    // Exposes payload.store.size and payload.store.evictions, tagged by store name.
+    public BoundedStore<K, V> registerMetrics(MeterRegistry registry, String name) {
+        Gauge.builder("payload.store.size", live, AtomicInteger::get)
+                .description("Entries held in a bounded bookkeeping store")
+                .tag("store", name)
+                .register(registry);
+        FunctionCounter.builder("payload.store.evictions", sizeEvictions, AtomicLong::get)
+                .tag("store", name).tag("cause", "size")
+                .register(registry);
+        FunctionCounter.builder("payload.store.evictions", expiredEvictions, AtomicLong::get)
+                .tag("store", name).tag("cause", "expired")
+                .register(registry);
+        return this;
+    }
+
+    private void added(Entry<K, V> entry) {
+        order.add(entry);
+        queued.incrementAndGet();
+        live.incrementAndGet();
+        evict();
+    }
+
+    private void evict() {
+        if (!evictLock.tryLock()) {
+            return; // another writer is already trimming
+        }
+        try {
+            long now = System.nanoTime();
+            Entry<K, V> head;
+            while ((head = order.peek()) != null) {
+                if (head.dead) {
+                    discardHead();
+                } else if (live.get() > maxEntries) {
+                    discardHead();
+                    evicted(head, Cause.SIZE);
+                } else if (expired(head, now)) {
+                    discardHead();
+                    evicted(head, Cause.EXPIRED);
+                } else {
+                    break;
+                }
+            }
+            // Explicit removals leave dead entries behind the head; sweep once they dominate.
+            if (queued.get() - live.get() > Math.max(live.get(), 64)) {
+                order.removeIf(entry -> {
+                    if (entry.dead) {
+                        queued.decrementAndGet();
+                        return true;
+                    }
+                    return false;
+                });
+            }
+        } finally {
+            evictLock.unlock();
+        }
+    }
+
+    private void discardHead() {
+        order.poll();
+        queued.decrementAndGet();
+    }
+
+    private void evicted(Entry<K, V> entry, Cause cause) {
+        if (!map.remove(entry.key, entry)) {
+            return; // removed or evicted concurrently
+        }
+        entry.dead = true;
+        live.decrementAndGet();
+        (cause == Cause.SIZE ? sizeEvictions : expiredEvictions).incrementAndGet();
+        if (listener != null) {
+            listener.onEviction(entry.key, entry.value, cause);
+        }
+    }
+
+    private boolean expired(Entry<K, V> entry, long now) {
+        return ttlNanos > 0 && now - entry.createdNanos > ttlNanos;
+    }
+
+    private static final class Entry<K, V> {
+        final K key;
+        final long createdNanos;
+        volatile V value;
+        volatile boolean dead;
+
+        Entry(K key, V value, long createdNanos) {
+            this.key = key;
+            this.value = value;
+            this.createdNanos = createdNanos;
+        }
+    }
+}
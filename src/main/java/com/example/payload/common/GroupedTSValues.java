@@ -0,0 +1,74 @@
+package com.example.payload.common;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+// Records of one payload grouped by key in first-seen order. Built incrementally by the
+// deserializers in this package so a payload is never materialized as a flat array first.
+public class GroupedTSValues {
+    private final Map<KeyDictionary.Key, Group> groups = new LinkedHashMap<>();
+    private int recordCount;
+
+    GroupedTSValues() {
+    }
+
+    public static GroupedTSValues of(Collection<TSValues> records) {
+        return of(records, null);
+    }
+
+    public static GroupedTSValues of(Collection<TSValues> records, KeyDictionary dictionary) {
+        GroupedTSValues grouped = new GroupedTSValues();
+        for (TSValues record : records) {
+            Objects.requireNonNull(record.key, "TSValues.key must not be null");
+            KeyDictionary.Key key = dictionary == null ? KeyDictionary.unregistered(record.key) : dictionary.intern(record.key);
+            grouped.add(key, record);
+        }
+        return grouped;
+    }
+
+    // record.key is expected to be key.value, so records of a key share one String
+    void add(KeyDictionary.Key key, TSValues record) {
+        Group group = groups.get(key);
+        if (group == null) {
+            group = new Group(key);
+            groups.put(key, group);
+        }
+        group.records.add(record);
+        recordCount++;
+    }
+
+    public Collection<Group> groups() {
+        return Collections.unmodifiableCollection(groups.values());
+    }
+
+    public List<TSValues> get(String key) {
+        Group group = groups.get(KeyDictionary.unregistered(key));
+        return group == null ? null : Collections.unmodifiableList(group.records);
+    }
+
+    public int keyCount() {
+        return groups.size();
+    }
+
+    public int recordCount() {
+        return recordCount;
+    }
+
+    public static final class Group {
+        public final KeyDictionary.Key key;
+        private final List<TSValues> records = new ArrayList<>();
+
+        private Group(KeyDictionary.Key key) {
+            this.key = key;
+        }
+
+        public List<TSValues> records() {
+            return Collections.unmodifiableList(records);
+        }
+    }
+}
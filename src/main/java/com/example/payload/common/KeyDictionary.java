@@ -0,0 +1,175 @@
+package com.example.payload.common;
+
+import java.util.Arrays;
+
+// Bounded dictionary that maps payload keys to one canonical String and a small integer id.
+// Lookups are lock-free reads of an open-addressing table and can be made straight from a
+// parser's char buffer, so a known key is neither re-allocated nor re-hashed as a new String.
+// Inserts take a lock. Once maxKeys ids are handed out, new keys get an uninterned Key with
+// id NO_ID, without locking, and callers fall back to hashing the string.
+public class KeyDictionary {
+    public static final int NO_ID = -1;
+    public static final int DEFAULT_MAX_KEYS = 65_536;
+
+    private final int maxKeys;
+    private final Object lock = new Object();
+    private volatile Key[] table = new Key[64];
+    private volatile Key[] byId = new Key[16];
+    private int size; // guarded by lock
+    private volatile boolean full; // size reached maxKeys; the table no longer changes
+
+    public KeyDictionary() {
+        this(DEFAULT_MAX_KEYS);
+    }
+
+    public KeyDictionary(int maxKeys) {
+        this.maxKeys = maxKeys;
+    }
+
+    public Key intern(String key) {
+        int hash = key.hashCode();
+        Key[] t = table;
+        for (int i = spread(hash) & (t.length - 1); t[i] != null; i = (i + 1) & (t.length - 1)) {
+            Key candidate = t[i];
+            if (candidate.hash == hash && candidate.value.equals(key)) {
+                return candidate;
+            }
+        }
+        if (full) {
+            return new Key(key, NO_ID, hash);
+        }
+        return insert(key, null, 0, 0, hash);
+    }
+
+    public Key intern(char[] chars, int offset, int length) {
+        int hash = 0;
+        for (int i = 0; i < length; i++) {
+            hash = 31 * hash + chars[offset + i]; // same as String.hashCode
+        }
+        Key[] t = table;
+        for (int i = spread(hash) & (t.length - 1); t[i] != null; i = (i + 1) & (t.length - 1)) {
+            Key candidate = t[i];
+            if (candidate.hash == hash && matches(candidate.value, chars, offset, length)) {
+                return candidate;
+            }
+        }
+        if (full) {
+            return new Key(new String(chars, offset, length), NO_ID, hash);
+        }
+        return insert(null, chars, offset, length, hash);
+    }
+
+    public Key byId(int id) {
+        Key[] ids = byId;
+        return id >= 0 && id < ids.length ? ids[id] : null;
+    }
+
+    public int size() {
+        synchronized (lock) {
+            return size;
+        }
+    }
+
+    // A Key that is not part of any dictionary, for callers without one.
+    public static Key unregistered(String key) {
+        return new Key(key, NO_ID, key.hashCode());
+    }
+
+    // key is null when called from the char[] overload; the String is only built once it is
+    // known to be needed.
+    private Key insert(String key, char[] chars, int offset, int length, int hash) {
+        synchronized (lock) {
+            Key[] t = table;
+            int i = spread(hash) & (t.length - 1);
+            for (; t[i] != null; i = (i + 1) & (t.length - 1)) {
+                if (t[i].hash == hash && (key != null ? t[i].value.equals(key) : matches(t[i].value, chars, offset, length))) {
+                    return t[i]; // raced with another inserter
+                }
+            }
+            if (key == null) {
+                key = new String(chars, offset, length);
+            }
+            if (size >= maxKeys) {
+                full = true;
+                return new Key(key, NO_ID, hash);
+            }
+            Key created = new Key(key, size, hash);
+            if (byId.length == size) {
+                byId = Arrays.copyOf(byId, size * 2);
+            }
+            byId[size] = created;
+            size++;
+            full = size >= maxKeys;
+            if (size * 2 > t.length) {
+                table = rehash(t, created);
+            } else {
+                t[i] = created; // Key is immutable, so racing readers see it whole or not at all
+            }
+            return created;
+        }
+    }
+
+    private static Key[] rehash(Key[] old, Key added) {
+        Key[] t = new Key[old.length * 2];
+        for (Key key : old) {
+            if (key != null) {
+                place(t, key);
+            }
+        }
+        place(t, added);
+        return t;
+    }
+
+    private static void place(Key[] t, Key key) {
+        int i = spread(key.hash) & (t.length - 1);
+        while (t[i] != null) {
+            i = (i + 1) & (t.length - 1);
+        }
+        t[i] = key;
+    }
+
+    private static boolean matches(String value, char[] chars, int offset, int length) {
+        if (value.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (value.charAt(i) != chars[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    public static final class Key {
+        public final String value;
+        public final int id;
+        private final int hash;
+
+        private Key(String value, int id, int hash) {
+            this.value = value;
+            this.id = id;
+            this.hash = hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key other)) return false;
+            return hash == other.hash && value.equals(other.value);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public String toString() {
+            return value;
+        }
+    }
+}
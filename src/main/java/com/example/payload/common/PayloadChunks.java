@@ -0,0 +1,47 @@
+package com.example.payload.common;
+
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+
+import java.nio.charset.StandardCharsets;
+
+// Headers of the chunked send mode (payload.send.chunkRecords). A large payload goes out as
+// several records under the same key, so they share a partition and arrive in order. Every
+// chunk carries its sequence number (from 0) and the chunk count, as decimal strings.
+// Records without these headers are whole payloads.
+public final class PayloadChunks {
+    public static final String SEQUENCE_HEADER = "payload-chunk";
+    public static final String COUNT_HEADER = "payload-chunks";
+
+    private PayloadChunks() {
+    }
+
+    public static void mark(Headers headers, int sequence, int count) {
+        headers.remove(SEQUENCE_HEADER);
+        headers.remove(COUNT_HEADER);
+        headers.add(SEQUENCE_HEADER, Integer.toString(sequence).getBytes(StandardCharsets.US_ASCII));
+        headers.add(COUNT_HEADER, Integer.toString(count).getBytes(StandardCharsets.US_ASCII));
+    }
+
+    // Sequence number of a chunk record, or -1 for a whole payload.
+    public static int sequence(Headers headers) {
+        return intHeader(headers, SEQUENCE_HEADER);
+    }
+
+    public static boolean isLast(Headers headers) {
+        int sequence = sequence(headers);
+        return sequence >= 0 && sequence == intHeader(headers, COUNT_HEADER) - 1;
+    }
+
+    private static int intHeader(Headers headers, String name) {
+        Header header = headers == null ? null : headers.lastHeader(name);
+        if (header == null || header.value() == null) {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(new String(header.value(), StandardCharsets.US_ASCII));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
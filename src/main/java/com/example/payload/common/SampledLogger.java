@@ -0,0 +1,38 @@
+package com.example.payload.common;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.spi.LoggingEventBuilder;
+import org.slf4j.spi.NOPLoggingEventBuilder;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+// INFO logger for one event category (its own logger name, so the category can be switched off
+// with logging.level.<name>=OFF) that only emits a sampled fraction of events. Callers build
+// the event with key/values through the returned builder; unsampled events cost a level check
+// and a random draw.
+public class SampledLogger {
+    private final Logger logger;
+    private final double sampleRate;
+
+    public SampledLogger(String category, double sampleRate) {
+        this.logger = LoggerFactory.getLogger(category);
+        this.sampleRate = Math.max(0.0, Math.min(1.0, sampleRate));
+    }
+
+    public LoggingEventBuilder atInfo() {
+        if (!logger.isInfoEnabled() || !sampled()) {
+            return NOPLoggingEventBuilder.singleton();
+        }
+        return logger.atInfo();
+    }
+
+    // Events that must not be sampled away, e.g. failures.
+    public LoggingEventBuilder atWarn() {
+        return logger.atWarn();
+    }
+
+    private boolean sampled() {
+        return sampleRate >= 1.0 || (sampleRate > 0.0 && ThreadLocalRandom.current().nextDouble() < sampleRate);
+    }
+}
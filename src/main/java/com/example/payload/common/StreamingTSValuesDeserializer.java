@@ -0,0 +1,83 @@
+package com.example.payload.common;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.serialization.Deserializer;
+
+import java.io.IOException;
+
+// Reads a JSON array of {key, value} objects token by token and appends each record straight
+// into its key group, instead of binding a TSValues[] and regrouping it afterwards. Keys are
+// looked up in the KeyDictionary from the parser's char buffer, so a known key is not
+// allocated again.
+public class StreamingTSValuesDeserializer implements Deserializer<GroupedTSValues> {
+
+    private final JsonFactory jsonFactory = new JsonFactory();
+    private final KeyDictionary dictionary;
+
+    public StreamingTSValuesDeserializer() {
+        this(new KeyDictionary());
+    }
+
+    public StreamingTSValuesDeserializer(KeyDictionary dictionary) {
+        this.dictionary = dictionary;
+    }
+
+    @Override
+    public GroupedTSValues deserialize(String topic, byte[] data) {
+        if (data == null) {
+            return null;
+        }
+        try (JsonParser parser = jsonFactory.createParser(data)) {
+            JsonToken token = parser.nextToken();
+            if (token == null || token == JsonToken.VALUE_NULL) {
+                return null;
+            }
+            if (token != JsonToken.START_ARRAY) {
+                throw new SerializationException("Expected JSON array of TSValues but found " + token);
+            }
+            GroupedTSValues grouped = new GroupedTSValues();
+            while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+                if (token == JsonToken.VALUE_NULL) {
+                    continue;
+                }
+                if (token != JsonToken.START_OBJECT) {
+                    throw new SerializationException("Expected TSValues object but found " + token);
+                }
+                readRecord(parser, grouped);
+            }
+            return grouped;
+        } catch (IOException e) {
+            throw new SerializationException("Failed to deserialize TSValues[] from topic " + topic, e);
+        }
+    }
+
+    private void readRecord(JsonParser parser, GroupedTSValues grouped) throws IOException {
+        TSValues record = new TSValues();
+        KeyDictionary.Key key = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            switch (field) {
+                case "key" -> key = readKey(parser, token);
+                case "value" -> record.value = parser.getValueAsString();
+                default -> parser.skipChildren(); // tolerate unknown fields
+            }
+        }
+        if (key == null) {
+            throw new SerializationException("TSValues record without key");
+        }
+        record.key = key.value;
+        grouped.add(key, record);
+    }
+
+    private KeyDictionary.Key readKey(JsonParser parser, JsonToken token) throws IOException {
+        if (token == JsonToken.VALUE_STRING) {
+            return dictionary.intern(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength());
+        }
+        String key = parser.getValueAsString(); // numbers and the like
+        return key == null ? null : dictionary.intern(key);
+    }
+}
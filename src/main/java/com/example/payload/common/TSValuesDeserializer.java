@@ -0,0 +1,37 @@
+package com.example.payload.common;
+
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.Deserializer;
+
+import java.nio.charset.StandardCharsets;
+
+// Picks the payload decoder from the content-type header: binary when the producer marked
+// the record as such, otherwise the streaming JSON decoder.
+public class TSValuesDeserializer implements Deserializer<GroupedTSValues> {
+    private final StreamingTSValuesDeserializer json;
+    private final BinaryTSValuesDeserializer binary;
+
+    public TSValuesDeserializer() {
+        this(new KeyDictionary());
+    }
+
+    public TSValuesDeserializer(KeyDictionary dictionary) {
+        this.json = new StreamingTSValuesDeserializer(dictionary);
+        this.binary = new BinaryTSValuesDeserializer(dictionary);
+    }
+
+    @Override
+    public GroupedTSValues deserialize(String topic, Headers headers, byte[] data) {
+        Header contentType = headers == null ? null : headers.lastHeader(BinaryTSValuesSerializer.CONTENT_TYPE_HEADER);
+        if (contentType != null && BinaryTSValuesSerializer.CONTENT_TYPE.equals(new String(contentType.value(), StandardCharsets.UTF_8))) {
+            return binary.deserialize(topic, data);
+        }
+        return json.deserialize(topic, data);
+    }
+
+    @Override
+    public GroupedTSValues deserialize(String topic, byte[] data) {
+        return json.deserialize(topic, data);
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.payload;
+
+import com.example.payload.bhwrtam.BackpressureMonitor;
+import com.example.payload.bhwrtam.KafkaPayloadProcessor;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.ContainerProperties;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.*;
+
+public class BackpressureMonitorTest {
+
+    @Test
+    void testPausesAboveHighWaterAndResumesBelowLowWater() {
+        AtomicReference<Double> fill = new AtomicReference<>(0.0);
+        KafkaPayloadProcessor processor = mock(KafkaPayloadProcessor.class);
+        when(processor.fillLevel()).thenAnswer(inv -> fill.get());
+        MessageListenerContainer payloadContainer = container("payload-topic");
+        MessageListenerContainer statusContainer = container("payload-status");
+        KafkaListenerEndpointRegistry listeners = mock(KafkaListenerEndpointRegistry.class);
+        when(listeners.getListenerContainers()).thenReturn(List.of(payloadContainer, statusContainer));
+
+        BackpressureMonitor monitor = new BackpressureMonitor();
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        ReflectionTestUtils.setField(monitor, "kafkaPayloadProcessor", processor);
+        ReflectionTestUtils.setField(monitor, "listenerRegistry", listeners);
+        ReflectionTestUtils.setField(monitor, "meterRegistry", registry);
+        ReflectionTestUtils.setField(monitor, "checkIntervalMs", 5L);
+        monitor.start();
+        try {
+            fill.set(0.9);
+            await().atMost(5, TimeUnit.SECONDS).until(monitor::isPaused);
+            verify(payloadContainer, timeout(1000)).pause();
+
+            fill.set(0.6); // between the marks: stays paused
+            verify(processor, timeout(1000).atLeast(5)).fillLevel();
+            assertEquals(true, monitor.isPaused());
+
+            fill.set(0.4);
+            await().atMost(5, TimeUnit.SECONDS).until(() -> !monitor.isPaused());
+            verify(payloadContainer, timeout(1000)).resume();
+            verify(statusContainer, never()).pause();
+            assertEquals(1.0, registry.get("payload.backpressure.pauses").counter().count());
+        } finally {
+            monitor.stop();
+        }
+    }
+
+    // Mock container whose pause state follows pause()/resume()
+    private static MessageListenerContainer container(String topic) {
+        MessageListenerContainer container = mock(MessageListenerContainer.class);
+        AtomicReference<Boolean> pauseRequested = new AtomicReference<>(false);
+        when(container.getContainerProperties()).thenReturn(new ContainerProperties(topic));
+        when(container.isPauseRequested()).thenAnswer(inv -> pauseRequested.get());
+        doAnswer(inv -> { pauseRequested.set(true); return null; }).when(container).pause();
+        doAnswer(inv -> { pauseRequested.set(false); return null; }).when(container).resume();
+        return container;
+    }
+}
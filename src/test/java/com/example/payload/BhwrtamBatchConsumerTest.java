@@ -0,0 +1,74 @@
+package com.example.payload;
+
+import com.example.payload.bhwrtam.BhwrtamBatchConsumer;
+import com.example.payload.bhwrtam.KafkaPayloadProcessor;
+import com.example.payload.bhwrtam.OffsetCommitTracker;
+import com.example.payload.bhwrtam.Payload;
+import com.example.payload.common.GroupedTSValues;
+import com.example.payload.common.TSValues;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+public class BhwrtamBatchConsumerTest {
+
+    @Test
+    void testPollIsCommittedOncePerPartitionPrefixesFinish() throws InterruptedException {
+        List<Payload> submitted = new ArrayList<>();
+        BhwrtamBatchConsumer consumer = consumer(submitted);
+        Acknowledgment first = mock(Acknowledgment.class);
+        Acknowledgment second = mock(Acknowledgment.class);
+
+        consumer.listenCluster1(List.of(record(0, 10, "a"), record(1, 20, "b")), first);
+        consumer.listenCluster1(List.of(record(0, 11, "c")), second);
+        assertEquals(3, submitted.size());
+
+        submitted.get(2).onComplete.run(); // partition 0 offset 11 waits for offset 10
+        submitted.get(1).onComplete.run();
+        verify(second, never()).acknowledge();
+        submitted.get(0).onComplete.run();
+        verify(first).acknowledge();
+        verify(second).acknowledge();
+    }
+
+    @Test
+    void testRewoundPartitionAbandonsTheEarlierDelivery() throws InterruptedException {
+        List<Payload> submitted = new ArrayList<>();
+        BhwrtamBatchConsumer consumer = consumer(submitted);
+        Acknowledgment beforeRebalance = mock(Acknowledgment.class);
+        Acknowledgment redelivered = mock(Acknowledgment.class);
+
+        consumer.listenCluster1(List.of(record(0, 10, "a")), beforeRebalance);
+        // partition 0 is revoked and reassigned, so offset 10 comes again in a later poll
+        consumer.listenCluster1(List.of(record(0, 10, "a")), redelivered);
+
+        submitted.get(1).onComplete.run();
+        verify(redelivered).acknowledge();
+        submitted.get(0).onComplete.run();
+        verify(beforeRebalance, never()).acknowledge();
+    }
+
+    private static BhwrtamBatchConsumer consumer(List<Payload> submitted) throws InterruptedException {
+        KafkaPayloadProcessor processor = mock(KafkaPayloadProcessor.class);
+        doAnswer(inv -> submitted.addAll(inv.getArgument(0))).when(processor).submitPayloads(anyList());
+        BhwrtamBatchConsumer consumer = new BhwrtamBatchConsumer();
+        ReflectionTestUtils.setField(consumer, "kafkaPayloadProcessor", processor);
+        ReflectionTestUtils.setField(consumer, "commitTracker", new OffsetCommitTracker(true));
+        return consumer;
+    }
+
+    private static ConsumerRecord<String, GroupedTSValues> record(int partition, long offset, String key) {
+        TSValues value = new TSValues();
+        value.key = "key";
+        value.value = "value";
+        return new ConsumerRecord<>("payload-topic", partition, offset, key, GroupedTSValues.of(List.of(value)));
+    }
+}
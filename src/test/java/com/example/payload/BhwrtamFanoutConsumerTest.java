@@ -0,0 +1,81 @@
+package com.example.payload;
+
+import com.example.payload.bhpubwrt.BhpubwrtProducer;
+import com.example.payload.bhpubwrt.PayloadStatus;
+import com.example.payload.bhwrtam.BhwrtamFanoutConsumer;
+import com.example.payload.bhwrtam.KafkaPayloadProcessor;
+import com.example.payload.bhwrtam.OffsetCommitTracker;
+import com.example.payload.common.GroupedTSValues;
+import com.example.payload.common.TSValues;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+public class BhwrtamFanoutConsumerTest {
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testOneRecordIsProcessedAndReportedPerClusterThenCommittedOnce() {
+        ExecutorService exec = Executors.newFixedThreadPool(4, r -> {
+            Thread t = new Thread(r);
+            t.setDaemon(true);
+            return t;
+        });
+        KafkaPayloadProcessor processor = new KafkaPayloadProcessor(exec);
+        BhpubwrtProducer producer = mock(BhpubwrtProducer.class);
+        when(producer.sendStatuses(anyList())).thenReturn(CompletableFuture.completedFuture(null));
+        ReflectionTestUtils.setField(processor, "bhpubwrtProducer", producer);
+        ReflectionTestUtils.setField(processor, "failKey", "key3");
+        ReflectionTestUtils.setField(processor, "failClustersRaw", "cluster-2");
+
+        BhwrtamFanoutConsumer consumer = new BhwrtamFanoutConsumer();
+        ReflectionTestUtils.setField(consumer, "kafkaPayloadProcessor", processor);
+        ReflectionTestUtils.setField(consumer, "commitTracker", new OffsetCommitTracker(true));
+        ReflectionTestUtils.invokeMethod(consumer, "init");
+
+        try {
+            List<TSValues> records = new ArrayList<>();
+            for (int i = 0; i < 40; i++) {
+                TSValues r = new TSValues();
+                r.key = "key" + (i % 4);
+                r.value = "value" + i;
+                records.add(r);
+            }
+            Acknowledgment ack = mock(Acknowledgment.class);
+            consumer.listen(new ConsumerRecord<>("payload-topic", 0, 7L, "fanout-1", GroupedTSValues.of(records)), ack);
+
+            ArgumentCaptor<List<PayloadStatus>> sent = ArgumentCaptor.forClass(List.class);
+            verify(ack, timeout(10_000)).acknowledge();
+            verify(producer, atLeastOnce()).sendStatuses(sent.capture());
+            List<PayloadStatus> statuses = sent.getAllValues().stream().flatMap(List::stream).toList();
+            assertEquals(3, statuses.size());
+            assertEquals(Set.of("cluster-1", "cluster-2", "cluster-3"),
+                    statuses.stream().map(s -> s.clusterId).collect(Collectors.toSet()));
+            for (PayloadStatus status : statuses) {
+                assertEquals("fanout-1", status.payloadId);
+                assertEquals(4, status.batchCount);
+                assertEquals(!status.clusterId.equals("cluster-2"), status.success, status.clusterId);
+            }
+            await().atMost(5, TimeUnit.SECONDS).until(() -> processor.getCompletedPayloads() == 1);
+        } finally {
+            processor.shutdown();
+            exec.shutdownNow();
+        }
+    }
+}
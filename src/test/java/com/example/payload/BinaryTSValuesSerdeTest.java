@@ -0,0 +1,102 @@
+package com.example.payload;
+
+import com.example.payload.common.BinaryTSValuesSerializer;
+import com.example.payload.common.GroupedTSValues;
+import com.example.payload.common.TSValues;
+import com.example.payload.common.TSValuesDeserializer;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BinaryTSValuesSerdeTest {
+
+    private final BinaryTSValuesSerializer serializer = new BinaryTSValuesSerializer();
+    private final TSValuesDeserializer deserializer = new TSValuesDeserializer();
+
+    @Test
+    void testRoundTripThroughContentTypeHeader() {
+        TSValues[] array = sample(1000, 10);
+        array[5].value = null;
+        array[6].value = "ünïcödé ✓";
+        RecordHeaders headers = new RecordHeaders();
+
+        byte[] data = serializer.serialize("payload-topic", headers, array);
+        GroupedTSValues grouped = deserializer.deserialize("payload-topic", headers, data);
+
+        assertEquals(1000, grouped.recordCount());
+        assertEquals(10, grouped.keyCount());
+        List<TSValues> key5 = grouped.get("key5");
+        assertNull(key5.get(0).value);
+        assertEquals("ünïcödé ✓", grouped.get("key6").get(0).value);
+        assertEquals("value15", key5.get(1).value);
+        assertSame(key5.get(0).key, key5.get(1).key, "Records of a key share the dictionary entry");
+    }
+
+    @Test
+    void testBinaryIsSmallerThanJson() {
+        TSValues[] array = sample(5000, 20);
+        byte[] binary = serializer.serialize("payload-topic", array);
+        byte[] json;
+        try (JsonSerializer<TSValues[]> jsonSerializer = new JsonSerializer<>()) {
+            json = jsonSerializer.serialize("payload-topic", array);
+        }
+        assertTrue(binary.length * 2 < json.length, "binary=" + binary.length + " json=" + json.length);
+    }
+
+    @Test
+    void testFallsBackToJsonWithoutHeader() {
+        TSValues[] array = sample(30, 3);
+        RecordHeaders headers = new RecordHeaders();
+        byte[] json;
+        try (JsonSerializer<TSValues[]> jsonSerializer = new JsonSerializer<>()) {
+            json = jsonSerializer.serialize("payload-topic", headers, array);
+        }
+        GroupedTSValues grouped = deserializer.deserialize("payload-topic", headers, json);
+        assertEquals(30, grouped.recordCount());
+        assertEquals(3, grouped.keyCount());
+    }
+
+    @Test
+    void testRejectsTruncatedPayload() {
+        RecordHeaders headers = new RecordHeaders();
+        byte[] data = serializer.serialize("payload-topic", headers, sample(10, 2));
+        byte[] truncated = Arrays.copyOf(data, data.length - 3);
+        assertThrows(SerializationException.class, () -> deserializer.deserialize("payload-topic", headers, truncated));
+        for (int length = 0; length < data.length; length++) {
+            byte[] prefix = Arrays.copyOf(data, length);
+            assertThrows(SerializationException.class, () -> deserializer.deserialize("payload-topic", headers, prefix),
+                    "prefix of " + length + " bytes");
+        }
+    }
+
+    @Test
+    void testRejectsCorruptLengthsAndCounts() {
+        RecordHeaders headers = new RecordHeaders();
+        serializer.serialize("payload-topic", headers, sample(1, 1)); // sets the content-type header
+        byte[] negativeKeyLength = {1, 1, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x0F};
+        byte[] negativeValueLength = {1, 1, 1, 'k', 1, 0, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x0F};
+        byte[] hugeRecordCount = {1, 0, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07};
+        byte[] keyIndexOutOfRange = {1, 1, 1, 'k', 1, 3, 1};
+        byte[] unterminatedVarint = {1, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, 0};
+        for (byte[] data : List.of(negativeKeyLength, negativeValueLength, hugeRecordCount, keyIndexOutOfRange,
+                unterminatedVarint)) {
+            assertThrows(SerializationException.class, () -> deserializer.deserialize("payload-topic", headers, data));
+        }
+    }
+
+    private static TSValues[] sample(int records, int keys) {
+        TSValues[] array = new TSValues[records];
+        for (int i = 0; i < records; i++) {
+            array[i] = new TSValues();
+            array[i].key = "key" + (i % keys);
+            array[i].value = "value" + i;
+        }
+        return array;
+    }
+}
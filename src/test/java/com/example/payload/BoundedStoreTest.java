@@ -0,0 +1,121 @@
+package com.example.payload;
+
+import com.example.payload.common.BoundedStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BoundedStoreTest {
+
+    @Test
+    void testEvictsOldestPastSizeBound() {
+        List<String> evicted = new ArrayList<>();
+        BoundedStore<String, Integer> store = new BoundedStore<>(3, Duration.ZERO,
+                (key, value, cause) -> evicted.add(key + ":" + cause));
+        for (int i = 0; i < 5; i++) {
+            store.put("k" + i, i);
+        }
+        store.put("k3", 33); // update keeps the slot
+
+        assertEquals(3, store.size());
+        assertNull(store.get("k0"));
+        assertEquals(33, store.get("k3"));
+        assertEquals(List.of("k2", "k3", "k4"), store.keys());
+        assertEquals(List.of("k0:SIZE", "k1:SIZE"), evicted);
+        assertEquals(2, store.evictions());
+    }
+
+    @Test
+    void testExpiresAfterTtl() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        BoundedStore<String, Integer> store = new BoundedStore<String, Integer>(100, Duration.ofMillis(50))
+                .registerMetrics(registry, "test");
+        store.put("old", 1);
+
+        await().atMost(5, TimeUnit.SECONDS).until(() -> store.get("old") == null);
+        store.put("new", 2);
+        assertEquals(1, store.size());
+        assertEquals(1.0, registry.get("payload.store.size").tag("store", "test").gauge().value());
+        assertEquals(1.0, registry.get("payload.store.evictions").tag("store", "test").tag("cause", "expired")
+                .functionCounter().count());
+    }
+
+    @Test
+    void testRemovedEntriesDoNotHoldSlots() {
+        BoundedStore<String, Integer> store = new BoundedStore<>(10, Duration.ZERO);
+        store.put("keep", 0);
+        for (int i = 0; i < 10_000; i++) {
+            store.put("tmp" + i, i);
+            assertEquals(i, store.remove("tmp" + i));
+        }
+        assertEquals(1, store.size());
+        assertEquals(0, store.get("keep"), "explicit removals must not push live entries out");
+        assertEquals(0, store.evictions());
+    }
+
+    @Test
+    void testReplaceSwapsValuesWithoutAGap() throws Exception {
+        BoundedStore<String, Integer> store = new BoundedStore<>(10, Duration.ZERO);
+        assertNull(store.replace("k", 0));
+        ExecutorService exec = Executors.newSingleThreadExecutor();
+        try {
+            AtomicInteger misses = new AtomicInteger();
+            Future<?> reader = exec.submit(() -> {
+                for (int i = 0; i < 200_000; i++) {
+                    if (store.get("k") == null) {
+                        misses.incrementAndGet();
+                    }
+                }
+            });
+            for (int i = 1; !reader.isDone(); i++) {
+                assertNotNull(store.replace("k", i));
+            }
+            reader.get();
+            assertEquals(0, misses.get(), "a reader saw the key missing mid-replace");
+        } finally {
+            exec.shutdownNow();
+        }
+        assertEquals(1, store.size());
+        assertEquals(List.of("k"), store.keys());
+    }
+
+    @Test
+    void testConcurrentWritersStayBounded() throws InterruptedException {
+        BoundedStore<String, Integer> store = new BoundedStore<>(1000, Duration.ZERO);
+        AtomicInteger inserted = new AtomicInteger();
+        ExecutorService exec = Executors.newFixedThreadPool(4);
+        try {
+            for (int t = 0; t < 4; t++) {
+                int thread = t;
+                exec.submit(() -> {
+                    for (int i = 0; i < 50_000; i++) {
+                        if (store.putIfAbsent(thread + "-" + i, i) == null) {
+                            inserted.incrementAndGet();
+                        }
+                    }
+                });
+            }
+            exec.shutdown();
+            assertTrue(exec.awaitTermination(30, TimeUnit.SECONDS));
+        } finally {
+            exec.shutdownNow();
+        }
+
+        store.put("last", 0); // a final uncontended write trims any overshoot
+        assertEquals(200_000, inserted.get());
+        assertEquals(1000, store.size());
+        assertEquals(1000, store.keys().size());
+        assertEquals(200_001 - 1000, store.evictions());
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.payload;
+
+import com.example.payload.bhpubwrt.BhpubwrtProducer;
+import com.example.payload.bhpubwrt.PayloadStatus;
+import com.example.payload.bhwrtam.KafkaPayloadProcessor;
+import com.example.payload.bhwrtam.Payload;
+import com.example.payload.common.GroupedTSValues;
+import com.example.payload.common.PayloadChunks;
+import com.example.payload.common.TSValues;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+public class ChunkedPayloadTest {
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testProducerSplitsPayloadIntoSequencedRecords() {
+        KafkaTemplate<String, TSValues[]> template = mock(KafkaTemplate.class);
+        when(template.send(any(ProducerRecord.class))).thenReturn(new CompletableFuture<>());
+        BhpubwrtProducer producer = new BhpubwrtProducer();
+        ReflectionTestUtils.setField(producer, "kafkaTemplate", template);
+        ReflectionTestUtils.setField(producer, "chunkRecords", 40);
+
+        producer.send("big", records(100, 10));
+
+        ArgumentCaptor<ProducerRecord<String, TSValues[]>> sent = ArgumentCaptor.forClass(ProducerRecord.class);
+        verify(template, times(3)).send(sent.capture());
+        List<ProducerRecord<String, TSValues[]>> chunks = sent.getAllValues();
+        assertEquals(List.of(40, 40, 20), chunks.stream().map(r -> r.value().length).toList());
+        for (int i = 0; i < chunks.size(); i++) {
+            assertEquals("big", chunks.get(i).key(), "chunks share the key, and so the partition");
+            assertEquals(i, PayloadChunks.sequence(chunks.get(i).headers()));
+            assertEquals(i == 2, PayloadChunks.isLast(chunks.get(i).headers()));
+        }
+        assertEquals("value99", chunks.get(2).value()[19].value);
+    }
+
+    @Test
+    void testChunksRunAsTheyArriveAndCompleteOnTheLast() throws InterruptedException {
+        ExecutorService exec = Executors.newFixedThreadPool(4, r -> {
+            Thread t = new Thread(r);
+            t.setDaemon(true);
+            return t;
+        });
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        KafkaPayloadProcessor payloadService = new KafkaPayloadProcessor(exec);
+        BhpubwrtProducer producer = mock(BhpubwrtProducer.class);
+        when(producer.sendStatuses(anyList())).thenReturn(CompletableFuture.completedFuture(null));
+        ReflectionTestUtils.setField(payloadService, "bhpubwrtProducer", producer);
+        ReflectionTestUtils.setField(payloadService, "meterRegistry", registry);
+        AtomicInteger callbacks = new AtomicInteger();
+
+        try {
+            String payloadId = "chunked::cluster-1";
+            // keys 0-4 in the first chunk, 5-9 in the second; the last chunk repeats keys 0-4
+            payloadService.submitPayloads(List.of(chunk(payloadId, 0, 3, 0, callbacks)));
+            payloadService.submitPayloads(List.of(chunk(payloadId, 1, 3, 5, callbacks)));
+            await().atMost(10, TimeUnit.SECONDS).until(() ->
+                    registry.get("payload.subbatch.completed").tag("outcome", "success").counter().count() == 10);
+            assertEquals(0, payloadService.getCompletedPayloads(), "not complete before the last chunk");
+
+            // out of sequence: dropped, and its commit callback is not held back
+            payloadService.submitPayloads(List.of(chunk("orphan::cluster-1", 1, 3, 0, callbacks)));
+            assertEquals(1, callbacks.get());
+
+            payloadService.submitPayloads(List.of(chunk(payloadId, 2, 3, 0, callbacks)));
+            await().atMost(10, TimeUnit.SECONDS).until(() -> payloadService.getCompletedPayloads() == 1);
+            await().atMost(10, TimeUnit.SECONDS).until(() -> callbacks.get() == 4);
+
+            @SuppressWarnings("unchecked")
+            ArgumentCaptor<List<PayloadStatus>> statuses = ArgumentCaptor.forClass(List.class);
+            verify(producer, timeout(5000)).sendStatuses(statuses.capture());
+            PayloadStatus status = statuses.getValue().get(0);
+            assertEquals("chunked", status.payloadId);
+            assertTrue(status.success);
+            assertEquals(15, status.batchCount, "one sub-batch per key per chunk");
+            assertEquals(List.of("chunked@cluster-1"), payloadService.getSuccessfulPayloadIds());
+        } finally {
+            payloadService.shutdown();
+            exec.shutdownNow();
+        }
+    }
+
+    private static Payload chunk(String payloadId, int sequence, int count, int firstKey, AtomicInteger callbacks) {
+        List<TSValues> records = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            TSValues r = new TSValues();
+            r.key = "key" + (firstKey + i % 5);
+            r.value = "value" + i;
+            records.add(r);
+        }
+        ConsumerRecord<String, GroupedTSValues> record = new ConsumerRecord<>("payload-topic", 0, sequence,
+                payloadId.substring(0, payloadId.indexOf("::")), GroupedTSValues.of(records));
+        PayloadChunks.mark(record.headers(), sequence, count);
+        return Payload.of(payloadId, record, callbacks::incrementAndGet);
+    }
+
+    private static List<TSValues> records(int count, int keys) {
+        List<TSValues> records = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            TSValues r = new TSValues();
+            r.key = "key" + (i % keys);
+            r.value = "value" + i;
+            records.add(r);
+        }
+        return records;
+    }
+}
@@ -0,0 +1,155 @@
+package com.example.payload;
+
+import com.example.payload.bhpubwrt.AggregatedPayloadStatus;
+import com.example.payload.bhpubwrt.BhpubwrtProducer;
+import com.example.payload.bhpubwrt.PayloadStatus;
+import com.example.payload.common.TSValues;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ClusterStatusAggregationTest {
+
+    @Test
+    void testAggregateFollowsLatestReplyPerCluster() {
+        BhpubwrtProducer producer = new BhpubwrtProducer();
+        ReflectionTestUtils.setField(producer, "expectedClusterReplies", 3);
+
+        producer.onStatus(new PayloadStatus("p", true, 10, "cluster-1"));
+        producer.onStatus(new PayloadStatus("p", true, 12, "cluster-2"));
+        AggregatedPayloadStatus partial = producer.getAggregatedStatus("p");
+        assertFalse(partial.allClustersReported);
+        assertFalse(partial.allSuccessful);
+        assertTrue(partial.atLeastOneSuccess);
+        assertEquals(12, partial.maxBatchCount);
+        assertEquals(2, partial.repliesReceived);
+
+        producer.onStatus(new PayloadStatus("p", true, 8, "cluster-3"));
+        AggregatedPayloadStatus complete = producer.getAggregatedStatus("p");
+        assertTrue(complete.allClustersReported);
+        assertTrue(complete.allSuccessful);
+        assertEquals(Set.of("cluster-1", "cluster-2", "cluster-3"), complete.clusterIds);
+
+        // A later failure replaces the cluster's earlier success
+        producer.onStatus(new PayloadStatus("p", false, 4, "cluster-2"));
+        AggregatedPayloadStatus failed = producer.getAggregatedStatus("p");
+        assertFalse(failed.allSuccessful);
+        assertTrue(failed.atLeastOneSuccess);
+        assertEquals(10, failed.maxBatchCount);
+        assertEquals(3, failed.repliesReceived);
+        assertSame(complete.clusterIds, failed.clusterIds, "cluster set is only rebuilt when a cluster joins");
+    }
+
+    @Test
+    void testReadsReturnTheSameSnapshotUntilSomethingChanges() {
+        BhpubwrtProducer producer = new BhpubwrtProducer();
+        PayloadStatus reply = new PayloadStatus("p", true, 5, "cluster-1");
+        producer.onStatus(reply);
+
+        AggregatedPayloadStatus first = producer.getAggregatedStatus("p");
+        assertSame(first, producer.getAggregatedStatus("p"));
+        producer.onStatus(reply); // duplicate delivery
+        assertSame(first, producer.getAggregatedStatus("p"));
+        assertThrows(UnsupportedOperationException.class, () -> first.clusterIds.add("cluster-9"));
+    }
+
+    @Test
+    void testSendAsyncCompletesWhenAllClustersReply() throws Exception {
+        BhpubwrtProducer producer = producerWithTemplate();
+
+        CompletableFuture<AggregatedPayloadStatus> future = producer.sendAsync("p", List.of(), Duration.ofSeconds(30));
+        producer.onStatus(new PayloadStatus("p", true, 3, "cluster-1"));
+        producer.onStatus(new PayloadStatus("p", true, 3, "cluster-2"));
+        assertFalse(future.isDone());
+        assertEquals(1, producer.getPendingCompletions());
+
+        producer.onStatus(new PayloadStatus("p", true, 3, "cluster-3"));
+        AggregatedPayloadStatus status = future.get(5, TimeUnit.SECONDS);
+        assertTrue(status.allClustersReported);
+        assertTrue(status.allSuccessful);
+        assertEquals(0, producer.getPendingCompletions());
+    }
+
+    @Test
+    void testSendAsyncTimesOutWithPartialStatusAndFreesItsSlot() throws Exception {
+        BhpubwrtProducer producer = producerWithTemplate();
+        ReflectionTestUtils.setField(producer, "maxPendingCompletions", 1);
+
+        CompletableFuture<AggregatedPayloadStatus> future = producer.sendAsync("p", List.of(), Duration.ofMillis(100));
+        producer.onStatus(new PayloadStatus("p", false, 3, "cluster-2"));
+        ExecutionException rejected = assertThrows(ExecutionException.class,
+                () -> producer.sendAsync("q", List.of(), Duration.ofSeconds(30)).get());
+        assertInstanceOf(RejectedExecutionException.class, rejected.getCause());
+
+        AggregatedPayloadStatus partial = future.get(5, TimeUnit.SECONDS);
+        assertFalse(partial.allClustersReported);
+        assertEquals(1, partial.repliesReceived);
+        assertEquals(0, producer.getPendingCompletions());
+        assertFalse(producer.sendAsync("q", List.of(), Duration.ofSeconds(30)).isDone(), "slot is free again");
+    }
+
+    @Test
+    void testResendWaitsForFreshReplies() throws Exception {
+        BhpubwrtProducer producer = producerWithTemplate();
+
+        CompletableFuture<AggregatedPayloadStatus> first = producer.sendAsync("p", List.of(), Duration.ofSeconds(30));
+        for (int c = 1; c <= 3; c++) {
+            producer.onStatus(new PayloadStatus("p", false, 3, "cluster-" + c));
+        }
+        assertFalse(first.get(5, TimeUnit.SECONDS).allSuccessful);
+
+        CompletableFuture<AggregatedPayloadStatus> resent = producer.sendAsync("p", List.of(), Duration.ofSeconds(30));
+        assertFalse(resent.isDone(), "the first send's replies do not count for the re-send");
+        assertEquals(0, producer.getAggregatedStatus("p").repliesReceived);
+        for (int c = 1; c <= 3; c++) {
+            producer.onStatus(new PayloadStatus("p", true, 3, "cluster-" + c));
+        }
+        assertTrue(resent.get(5, TimeUnit.SECONDS).allSuccessful);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testRepliesArrivingDuringSendAreKept() {
+        KafkaTemplate<String, TSValues[]> template = mock(KafkaTemplate.class);
+        BhpubwrtProducer producer = new BhpubwrtProducer();
+        ReflectionTestUtils.setField(producer, "kafkaTemplate", template);
+        ReflectionTestUtils.setField(producer, "expectedClusterReplies", 3);
+        // every cluster replies before send returns
+        when(template.send(anyString(), anyString(), any())).thenAnswer(invocation -> {
+            for (int c = 1; c <= 3; c++) {
+                producer.onStatus(new PayloadStatus("fast", true, 1, "cluster-" + c));
+            }
+            return new CompletableFuture<>();
+        });
+
+        producer.send("fast", List.of());
+
+        AggregatedPayloadStatus status = producer.getAggregatedStatus("fast");
+        assertTrue(status.allClustersReported);
+        assertEquals(3, status.repliesReceived);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static BhpubwrtProducer producerWithTemplate() {
+        KafkaTemplate<String, TSValues[]> template = mock(KafkaTemplate.class);
+        when(template.send(anyString(), anyString(), any())).thenReturn(new CompletableFuture<>());
+        BhpubwrtProducer producer = new BhpubwrtProducer();
+        ReflectionTestUtils.setField(producer, "kafkaTemplate", template);
+        ReflectionTestUtils.setField(producer, "expectedClusterReplies", 3);
+        return producer;
+    }
+}
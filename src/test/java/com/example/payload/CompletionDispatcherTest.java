@@ -0,0 +1,83 @@
+package com.example.payload;
+
+import com.example.payload.bhwrtam.CompletionDispatcher;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CompletionDispatcherTest {
+
+    @Test
+    void testDeliversEveryCompletionUnderBackpressure() throws InterruptedException {
+        Set<String> handled = ConcurrentHashMap.newKeySet();
+        AtomicInteger largestBatch = new AtomicInteger();
+        // tiny buffer and slow handler so emitters hit the bounded sink's overflow path
+        CompletionDispatcher dispatcher = new CompletionDispatcher(batch -> {
+            largestBatch.accumulateAndGet(batch.size(), Math::max);
+            sleepQuietly(2);
+            handled.addAll(batch);
+        }, 4, 16, Duration.ofMillis(5), 8);
+
+        ExecutorService producers = Executors.newFixedThreadPool(6);
+        try {
+            int perProducer = 500;
+            for (int p = 0; p < 6; p++) {
+                int producer = p;
+                producers.submit(() -> {
+                    for (int i = 0; i < perProducer; i++) {
+                        dispatcher.emit("payload-" + producer + "-" + i);
+                    }
+                });
+            }
+            producers.shutdown();
+            assertTrue(producers.awaitTermination(30, TimeUnit.SECONDS));
+
+            await().atMost(30, TimeUnit.SECONDS).until(() -> handled.size() == 6 * perProducer);
+            assertTrue(largestBatch.get() > 1, "Completions should be handled in batches");
+            assertTrue(largestBatch.get() <= 16, "Batches must respect the configured maximum");
+        } finally {
+            producers.shutdownNow();
+            dispatcher.shutdown();
+        }
+        assertTrue(dispatcher.isDisposed());
+    }
+
+    @Test
+    void testHandlerFailureDoesNotStopDispatching() {
+        Set<String> handled = ConcurrentHashMap.newKeySet();
+        CompletionDispatcher dispatcher = new CompletionDispatcher(batch -> {
+            if (batch.contains("poison")) {
+                throw new IllegalStateException("boom");
+            }
+            handled.addAll(batch);
+        }, 1, 1, Duration.ofMillis(1), 16);
+
+        try {
+            dispatcher.emit("poison");
+            dispatcher.emit("healthy");
+
+            await().atMost(5, TimeUnit.SECONDS).until(() -> handled.contains("healthy"));
+            assertEquals(List.of("healthy"), List.copyOf(handled));
+        } finally {
+            dispatcher.shutdown();
+        }
+    }
+
+    private static void sleepQuietly(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -1,16 +1,41 @@
 package com.example.payload;
 
+import com.example.payload.bhpubwrt.BhpubwrtProducer;
+import com.example.payload.bhpubwrt.PayloadStatus;
 import com.example.payload.bhwrtam.KafkaPayloadProcessor;
+import com.example.payload.bhwrtam.Payload;
+import com.example.payload.common.GroupedTSValues;
 import com.example.payload.common.TSValues;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledForJreRange;
+import org.junit.jupiter.api.condition.JRE;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
 
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
 public class KafkaPayloadProcessorTest {
 
     @Test
@@ -48,4 +73,354 @@ public class KafkaPayloadProcessorTest {
             exec.shutdownNow();
         }
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testSubmitPayloadsInOnePass() throws InterruptedException {
+        ExecutorService exec = Executors.newFixedThreadPool(4, r -> {
+            Thread t = new Thread(r);
+            t.setDaemon(true);
+            return t;
+        });
+        KafkaPayloadProcessor payloadService = new KafkaPayloadProcessor(exec);
+
+        try {
+            List<Payload> payloads = new ArrayList<>();
+            for (int p = 1; p <= 5; p++) {
+                List<TSValues> records = new ArrayList<>();
+                for (int i = 0; i < 50; i++) {
+                    TSValues r = new TSValues();
+                    r.key = "key" + (i % 7);
+                    r.value = "value" + i;
+                    records.add(r);
+                }
+                payloads.add(new Payload("batch-payload-" + p, GroupedTSValues.of(records)));
+            }
+            payloadService.submitPayloads(payloads);
+
+            await().atMost(10, TimeUnit.SECONDS).until(() -> payloadService.getCompletedPayloads() == 5);
+            assertEquals(5, payloadService.getSuccessfulPayloadsCount());
+        } finally {
+            payloadService.shutdown();
+            exec.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testWorkStealingCompletesAllPayloads() throws InterruptedException {
+        ExecutorService exec = daemonExecutor(8);
+        KafkaPayloadProcessor payloadService = new KafkaPayloadProcessor(exec, 8);
+        ReflectionTestUtils.setField(payloadService, "workStealing", true);
+
+        try {
+            for (int p = 1; p <= 20; p++) {
+                // one hot key dominates every payload
+                List<TSValues> records = new ArrayList<>();
+                for (int i = 0; i < 40; i++) {
+                    records.add(record(i < 30 ? "hot" : "key" + i, "value" + i));
+                }
+                payloadService.submitLargePayload("stealing-payload-" + p, records);
+            }
+
+            await().atMost(10, TimeUnit.SECONDS).until(() -> payloadService.getCompletedPayloads() == 20);
+            assertEquals(8, payloadService.getLaneCount());
+            assertEquals(20, payloadService.getSuccessfulPayloadsCount());
+        } finally {
+            payloadService.shutdown();
+            exec.shutdownNow();
+        }
+    }
+
+    @Test
+    @EnabledForJreRange(min = JRE.JAVA_21)
+    public void testVirtualThreadExecutionMode() throws InterruptedException {
+        KafkaPayloadProcessor payloadService = new KafkaPayloadProcessor();
+        ReflectionTestUtils.setField(payloadService, "executionMode", "virtual");
+        ReflectionTestUtils.setField(payloadService, "virtualMaxInFlight", 8);
+
+        try {
+            for (int p = 1; p <= 10; p++) {
+                List<TSValues> records = records(100, 25);
+                payloadService.submitLargePayload("virtual-payload-" + p, records);
+            }
+
+            assertNotNull(ReflectionTestUtils.getField(payloadService, "virtualExecutor"), "runs on virtual threads");
+            assertEquals(0, payloadService.getLaneCount());
+            await().atMost(10, TimeUnit.SECONDS).until(() -> payloadService.getCompletedPayloads() == 10);
+            assertEquals(10, payloadService.getSuccessfulPayloadsCount());
+        } finally {
+            payloadService.shutdown();
+        }
+    }
+
+    @Test
+    @EnabledForJreRange(max = JRE.JAVA_20)
+    public void testVirtualModeFallsBackToLanesWithoutVirtualThreads() throws InterruptedException {
+        ExecutorService exec = daemonExecutor(4);
+        KafkaPayloadProcessor payloadService = new KafkaPayloadProcessor(exec, 4);
+        ReflectionTestUtils.setField(payloadService, "executionMode", "virtual");
+
+        try {
+            payloadService.submitLargePayload("fallback-payload", records(100, 25));
+
+            assertNull(ReflectionTestUtils.getField(payloadService, "virtualExecutor"));
+            assertEquals(4, payloadService.getLaneCount());
+            await().atMost(10, TimeUnit.SECONDS).until(() -> payloadService.getCompletedPayloads() == 1);
+            assertEquals(1, payloadService.getSuccessfulPayloadsCount());
+        } finally {
+            payloadService.shutdown();
+            exec.shutdownNow();
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testHotKeyIsSplitIntoCappedSubBatches() throws InterruptedException {
+        ExecutorService exec = daemonExecutor(4);
+        KafkaPayloadProcessor payloadService = new KafkaPayloadProcessor(exec);
+        ReflectionTestUtils.setField(payloadService, "maxSubBatchRecords", 25);
+        BhpubwrtProducer producer = mock(BhpubwrtProducer.class);
+        when(producer.sendStatuses(anyList())).thenReturn(CompletableFuture.completedFuture(null));
+        ReflectionTestUtils.setField(payloadService, "bhpubwrtProducer", producer);
+
+        try {
+            // 90 hot records -> 4 chunks, plus 10 single-record keys
+            List<TSValues> records = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                records.add(record(i < 90 ? "hot" : "cold" + i, "value" + i));
+            }
+            payloadService.submitLargePayload("hot-key-payload", records);
+
+            await().atMost(10, TimeUnit.SECONDS).until(() -> payloadService.getCompletedPayloads() == 1);
+            ArgumentCaptor<List<PayloadStatus>> captor = ArgumentCaptor.forClass(List.class);
+            verify(producer, timeout(5000)).sendStatuses(captor.capture());
+            PayloadStatus status = captor.getValue().get(0);
+            assertEquals(14, status.batchCount, "4 chunks for the hot key plus one sub-batch per cold key");
+            assertTrue(status.success);
+        } finally {
+            payloadService.shutdown();
+            exec.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testMetricsAreRecorded() throws InterruptedException {
+        ExecutorService exec = daemonExecutor(4);
+        KafkaPayloadProcessor payloadService = new KafkaPayloadProcessor(exec);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        ReflectionTestUtils.setField(payloadService, "meterRegistry", registry);
+
+        try {
+            List<TSValues> records = records(100, 10);
+            payloadService.submitLargePayload("metrics-payload::cluster-1", records);
+
+            await().atMost(10, TimeUnit.SECONDS).until(() -> payloadService.getCompletedPayloads() == 1);
+            assertEquals(4, registry.find("payload.lane.depth").gauges().size());
+            assertEquals(10, registry.get("payload.enqueue.wait").timer().count());
+            assertEquals(10, registry.get("payload.subbatch.duration").timer().count());
+            assertEquals(10.0, registry.get("payload.subbatch.completed")
+                    .tag("cluster", "cluster-1").tag("outcome", "success").counter().count());
+            await().atMost(5, TimeUnit.SECONDS).until(() -> registry.get("payload.e2e.duration").timer().count() == 1);
+        } finally {
+            payloadService.shutdown();
+            exec.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testBookkeepingStaysBoundedUnderSustainedLoad() throws InterruptedException {
+        ExecutorService exec = daemonExecutor(4);
+        KafkaPayloadProcessor payloadService = new KafkaPayloadProcessor(exec);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        ReflectionTestUtils.setField(payloadService, "meterRegistry", registry);
+        ReflectionTestUtils.setField(payloadService, "stateMaxEntries", 500);
+
+        try {
+            // Constant payload rate: several times the bound, in rounds
+            int rounds = 10;
+            int perRound = 1000;
+            for (int round = 0; round < rounds; round++) {
+                List<Payload> payloads = new ArrayList<>();
+                for (int p = 0; p < perRound; p++) {
+                    List<TSValues> records = records(4, 4);
+                    payloads.add(new Payload("soak-" + round + "-" + p + "::cluster-1", GroupedTSValues.of(records)));
+                }
+                payloadService.submitPayloads(payloads);
+                int expected = (round + 1) * perRound;
+                await().atMost(30, TimeUnit.SECONDS).until(() -> payloadService.getCompletedPayloads() == expected);
+                for (String store : List.of("successful-payloads", "clusters-completed", "payloads-counted")) {
+                    double size = registry.get("payload.store.size").tag("store", store).gauge().value();
+                    assertTrue(size <= 500, store + " grew to " + size);
+                }
+            }
+            assertEquals(rounds * perRound, payloadService.getSuccessfulPayloadsCount());
+            List<String> retained = payloadService.getSuccessfulPayloadIds();
+            assertEquals(500, retained.size());
+            assertTrue(retained.stream().allMatch(id -> id.startsWith("soak-9-")), "only the latest payloads are kept");
+        } finally {
+            payloadService.shutdown();
+            exec.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testBackpressureModeNeverBlocksTheListener() throws Exception {
+        // The only worker thread is held back, so nothing drains the lane until released
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService exec = heldExecutor(release);
+        KafkaPayloadProcessor payloadService = new KafkaPayloadProcessor(exec, 1);
+        ReflectionTestUtils.setField(payloadService, "laneCapacity", 10);
+        ReflectionTestUtils.setField(payloadService, "backpressure", true);
+
+        try {
+            List<TSValues> records = records(60, 60);
+            // 60 sub-batches: past the lane's 4x headroom of 40, the rest is deferred
+            assertTimeoutPreemptively(Duration.ofSeconds(5),
+                    () -> payloadService.submitLargePayload("bp-payload", records));
+            assertEquals(6.0, payloadService.fillLevel());
+
+            release.countDown();
+            await().atMost(10, TimeUnit.SECONDS).until(() -> payloadService.getCompletedPayloads() == 1);
+            assertEquals(1, payloadService.getSuccessfulPayloadsCount());
+            assertEquals(0.0, payloadService.fillLevel());
+        } finally {
+            payloadService.shutdown();
+            exec.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testCompletionCallbackRunsOnlyOnceStatusIsPublished() throws InterruptedException {
+        ExecutorService exec = daemonExecutor(4);
+        KafkaPayloadProcessor payloadService = new KafkaPayloadProcessor(exec);
+        BhpubwrtProducer producer = mock(BhpubwrtProducer.class);
+        CompletableFuture<Void> published = new CompletableFuture<>();
+        when(producer.sendStatuses(anyList()))
+                .thenReturn(published, CompletableFuture.failedFuture(new IllegalStateException("primary unreachable")));
+        ReflectionTestUtils.setField(payloadService, "bhpubwrtProducer", producer);
+
+        try {
+            List<TSValues> records = records(20, 5);
+            List<String> completed = Collections.synchronizedList(new ArrayList<>());
+            payloadService.submitGroupedPayload("callback-payload::cluster-1", GroupedTSValues.of(records),
+                    () -> completed.add("callback-payload"));
+            verify(producer, timeout(5000)).sendStatuses(anyList());
+            assertTrue(completed.isEmpty(), "not before the primary acknowledged the status");
+            published.complete(null);
+            await().atMost(10, TimeUnit.SECONDS).until(() -> completed.size() == 1);
+
+            // a failed publish leaves the payload uncommitted
+            payloadService.submitGroupedPayload("unpublished::cluster-1", GroupedTSValues.of(records),
+                    () -> completed.add("unpublished"));
+            verify(producer, timeout(5000).times(2)).sendStatuses(anyList());
+            await().atMost(10, TimeUnit.SECONDS).until(() -> payloadService.getCompletedPayloads() == 2);
+            assertEquals(List.of("callback-payload"), completed);
+        } finally {
+            payloadService.shutdown();
+            exec.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testOffHeapValuesAreReleasedOnceTheirSubBatchesRun() throws InterruptedException {
+        // The only worker thread is held back, so the sub-batches stay queued until released
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService exec = heldExecutor(release);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        KafkaPayloadProcessor payloadService = new KafkaPayloadProcessor(exec, 1);
+        ReflectionTestUtils.setField(payloadService, "meterRegistry", registry);
+        ReflectionTestUtils.setField(payloadService, "offHeap", true);
+        ReflectionTestUtils.setField(payloadService, "offHeapChunkBytes", 64);
+
+        try {
+            List<TSValues> records = records(20, 5);
+            long payloadBytes = 10 * "valueN".length() + 10 * "valueNN".length();
+            payloadService.submitGroupedPayload("offheap::cluster-1", GroupedTSValues.of(records));
+            assertEquals(payloadBytes, payloadService.offHeapBytesInUse());
+            assertEquals(payloadBytes, registry.get("payload.offheap.used.bytes").gauge().value());
+
+            // a redelivery of the same id gets an arena of its own; the first one's queued
+            // sub-batches still read their values
+            payloadService.submitGroupedPayload("offheap::cluster-1", GroupedTSValues.of(records));
+            assertEquals(2 * payloadBytes, payloadService.offHeapBytesInUse());
+
+            release.countDown();
+            await().atMost(10, TimeUnit.SECONDS).until(() -> payloadService.getCompletedPayloads() == 1);
+            await().atMost(10, TimeUnit.SECONDS).until(() -> payloadService.offHeapBytesInUse() == 0);
+            assertEquals(List.of("offheap@cluster-1"), payloadService.getSuccessfulPayloadIds());
+            double reserved = registry.get("payload.offheap.reserved.bytes").gauge().value();
+
+            // the released chunks are pooled and reused
+            payloadService.submitGroupedPayload("again::cluster-1", GroupedTSValues.of(records));
+            await().atMost(10, TimeUnit.SECONDS).until(() -> payloadService.getCompletedPayloads() == 2);
+            assertEquals(reserved, registry.get("payload.offheap.reserved.bytes").gauge().value());
+            assertEquals(0, payloadService.offHeapBytesInUse());
+        } finally {
+            payloadService.shutdown();
+            exec.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testOffHeapCopyIsRolledBackWhenThePoolRunsOut() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService exec = heldExecutor(release);
+        KafkaPayloadProcessor payloadService = new KafkaPayloadProcessor(exec, 1);
+        ReflectionTestUtils.setField(payloadService, "offHeap", true);
+        ReflectionTestUtils.setField(payloadService, "offHeapChunkBytes", 64);
+        ReflectionTestUtils.setField(payloadService, "offHeapMaxBytes", 64L);
+
+        try {
+            // key a fills 50 of the only 64 bytes; key b's first value fits, its second does not
+            List<TSValues> records = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                String key = i < 5 ? "a" : "b";
+                records.add(record(key, key.repeat(9) + i));
+            }
+            payloadService.submitGroupedPayload("partial::cluster-1", GroupedTSValues.of(records));
+            assertEquals(50, payloadService.offHeapBytesInUse(), "key b stays on the heap, none of it off-heap");
+
+            release.countDown();
+            await().atMost(10, TimeUnit.SECONDS).until(() -> payloadService.getCompletedPayloads() == 1);
+            assertEquals(1, payloadService.getSuccessfulPayloadsCount());
+            await().atMost(10, TimeUnit.SECONDS).until(() -> payloadService.offHeapBytesInUse() == 0);
+        } finally {
+            payloadService.shutdown();
+            exec.shutdownNow();
+        }
+    }
+
+    // Daemon threads, so the JVM can exit cleanly if something goes wrong.
+    private static ExecutorService daemonExecutor(int threads) {
+        return Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r);
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    private static TSValues record(String key, String value) {
+        TSValues r = new TSValues();
+        r.key = key;
+        r.value = value;
+        return r;
+    }
+
+    // Record i has value "value" + i and key "key" + (i % keys).
+    private static List<TSValues> records(int count, int keys) {
+        List<TSValues> records = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            records.add(record("key" + (i % keys), "value" + i));
+        }
+        return records;
+    }
+
+    // A single worker thread held back until release counts down, so nothing drains the lanes.
+    private static ExecutorService heldExecutor(CountDownLatch release) {
+        ExecutorService exec = daemonExecutor(1);
+        exec.submit(() -> {
+            release.await();
+            return null;
+        });
+        return exec;
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.payload;
+
+import com.example.payload.common.KeyDictionary;
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class KeyDictionaryTest {
+
+    @Test
+    void testCanonicalInstancesAndDenseIds() {
+        KeyDictionary dictionary = new KeyDictionary();
+        KeyDictionary.Key a = dictionary.intern(new String("sensor-a"));
+        KeyDictionary.Key b = dictionary.intern("sensor-b");
+        char[] buffer = "xxsensor-ayy".toCharArray();
+
+        assertSame(a, dictionary.intern(new String("sensor-a")));
+        assertSame(a, dictionary.intern(buffer, 2, 8), "char-buffer lookup must find the same entry");
+        assertEquals(0, a.id);
+        assertEquals(1, b.id);
+        assertSame(b, dictionary.byId(1));
+        assertEquals(2, dictionary.size());
+    }
+
+    @Test
+    void testGrowsPastInitialTableAndStopsAtBound() {
+        KeyDictionary dictionary = new KeyDictionary(500);
+        for (int i = 0; i < 1000; i++) {
+            dictionary.intern("key" + i);
+        }
+        assertEquals(500, dictionary.size());
+        assertEquals(499, dictionary.intern("key499").id);
+        KeyDictionary.Key overflow = dictionary.intern("key750");
+        assertEquals(KeyDictionary.NO_ID, overflow.id);
+        assertEquals("key750", overflow.value);
+        assertEquals(overflow, dictionary.intern("key750"), "Overflow keys still compare by value");
+        assertEquals(overflow, dictionary.intern("key750".toCharArray(), 0, 6));
+        assertSame(dictionary.byId(499), dictionary.intern("key499".toCharArray(), 0, 6), "Known keys still resolve once full");
+    }
+
+    @Test
+    void testConcurrentInternsAgreeOnIds() throws InterruptedException {
+        KeyDictionary dictionary = new KeyDictionary();
+        Set<KeyDictionary.Key> seen = ConcurrentHashMap.newKeySet();
+        ExecutorService exec = Executors.newFixedThreadPool(8);
+        try {
+            for (int t = 0; t < 8; t++) {
+                exec.submit(() -> {
+                    for (int i = 0; i < 2000; i++) {
+                        seen.add(dictionary.intern("key" + (i % 300)));
+                    }
+                });
+            }
+            exec.shutdown();
+            assertTrue(exec.awaitTermination(10, TimeUnit.SECONDS));
+        } finally {
+            exec.shutdownNow();
+        }
+        assertEquals(300, dictionary.size());
+        assertEquals(300, seen.size());
+        seen.forEach(k -> assertSame(k, dictionary.byId(k.id)));
+    }
+}
@@ -0,0 +1,138 @@
+package com.example.payload;
+
+import com.example.payload.bhpubwrt.MappedFileStatusStore;
+import com.example.payload.bhpubwrt.PayloadStatus;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MappedFileStatusStoreTest {
+
+    @TempDir
+    Path dir;
+
+    private MappedFileStatusStore open() {
+        MappedFileStatusStore store = new MappedFileStatusStore(dir, 100_000, Duration.ZERO, 0);
+        store.open();
+        return store;
+    }
+
+    @Test
+    void testReopenRestoresStatusesFromCheckpoint() {
+        MappedFileStatusStore store = open();
+        for (int i = 0; i < 1000; i++) {
+            store.add(new PayloadStatus("p" + i, i % 7 != 0, i, "cluster-" + (i % 3 + 1)));
+        }
+        store.add(new PayloadStatus("p1", false, 99, null)); // latest wins
+        store.close();
+
+        MappedFileStatusStore reopened = open();
+        try {
+            assertEquals(1000, reopened.size());
+            PayloadStatus p1 = reopened.get("p1");
+            assertFalse(p1.success);
+            assertEquals(99, p1.batchCount);
+            assertNull(p1.clusterId);
+            PayloadStatus p8 = reopened.get("p8");
+            assertTrue(p8.success);
+            assertEquals("cluster-3", p8.clusterId);
+            assertEquals(List.of("p0", "p1", "p2"), reopened.getAll().keySet().stream().limit(3).toList());
+        } finally {
+            reopened.close();
+        }
+    }
+
+    @Test
+    void testRecoversWithoutCheckpointAndDropsTornTail() throws IOException {
+        MappedFileStatusStore store = open();
+        store.add(new PayloadStatus("a", true, 1, "cluster-1"));
+        store.add(new PayloadStatus("b", true, 2, "cluster-1"));
+        int end = store.logBytes();
+        store.add(new PayloadStatus("c", true, 3, "cluster-1"));
+        store.close();
+
+        // Lose the checkpoint and corrupt the last record, as after a crash mid-write
+        Files.delete(dir.resolve("status.idx"));
+        try (var channel = Files.newByteChannel(dir.resolve("status.log"), StandardOpenOption.WRITE)) {
+            channel.position(end + 10);
+            channel.write(ByteBuffer.wrap(new byte[]{42, 42}));
+        }
+
+        MappedFileStatusStore reopened = open();
+        try {
+            assertEquals(2, reopened.size());
+            assertNull(reopened.get("c"));
+            reopened.add(new PayloadStatus("d", false, 4, "cluster-2"));
+            assertEquals(4, reopened.get("d").batchCount);
+        } finally {
+            reopened.close();
+        }
+        MappedFileStatusStore again = open();
+        try {
+            assertEquals(3, again.size());
+            assertEquals("cluster-2", again.get("d").clusterId);
+        } finally {
+            again.close();
+        }
+    }
+
+    @Test
+    void testCompactionKeepsLatestAndShrinksLog() {
+        MappedFileStatusStore store = open();
+        for (int round = 0; round < 20; round++) {
+            for (int i = 0; i < 100; i++) {
+                store.add(new PayloadStatus("p" + i, true, round, "cluster-1"));
+            }
+        }
+        int before = store.logBytes();
+        store.compact();
+        assertTrue(store.logBytes() * 10 < before, "compaction should drop superseded records");
+        assertEquals(100, store.size());
+        assertEquals(19, store.get("p42").batchCount);
+        store.add(new PayloadStatus("p42", false, 20, "cluster-1"));
+        assertEquals(19, store.get("p0").batchCount, "appends after compaction go past the compacted records");
+        store.close();
+
+        MappedFileStatusStore reopened = open();
+        try {
+            assertEquals(100, reopened.size());
+            assertEquals(20, reopened.get("p42").batchCount);
+            assertFalse(reopened.get("p42").success);
+            reopened.clear();
+            assertEquals(0, reopened.size());
+            assertNull(reopened.get("p1"));
+        } finally {
+            reopened.close();
+        }
+    }
+
+    @Test
+    void testReopenKeepsTheOriginalTtl() throws InterruptedException {
+        MappedFileStatusStore store = new MappedFileStatusStore(dir, 100, Duration.ofMillis(2000), 0);
+        store.open();
+        store.add(new PayloadStatus("old", true, 1, "cluster-1"));
+        Thread.sleep(1200);
+        store.close();
+
+        MappedFileStatusStore reopened = new MappedFileStatusStore(dir, 100, Duration.ofMillis(2000), 0);
+        reopened.open();
+        try {
+            assertNotNull(reopened.get("old"));
+            // a fresh ttl would keep it for another 2 s
+            await().atMost(1500, TimeUnit.MILLISECONDS).until(() -> reopened.get("old") == null);
+        } finally {
+            reopened.close();
+        }
+    }
+}
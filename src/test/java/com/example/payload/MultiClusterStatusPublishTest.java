@@ -0,0 +1,158 @@
+package com.example.payload;
+
+import com.example.payload.bhpubwrt.BhpubwrtProducer;
+import com.example.payload.bhpubwrt.PayloadStatus;
+import com.example.payload.bhwrtam.KafkaPayloadProcessor;
+import com.example.payload.common.GroupedTSValues;
+import com.example.payload.common.TSValues;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class MultiClusterStatusPublishTest {
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testSlowClusterDoesNotDelayOthers() throws Exception {
+        KafkaTemplate<String, PayloadStatus> primary = mock(KafkaTemplate.class);
+        KafkaTemplate<String, PayloadStatus> cluster2 = mock(KafkaTemplate.class);
+        KafkaTemplate<String, PayloadStatus> cluster3 = mock(KafkaTemplate.class);
+        when(primary.send(anyString(), anyString(), any()))
+                .thenReturn(CompletableFuture.completedFuture(mock(SendResult.class)));
+        when(cluster3.send(anyString(), anyString(), any()))
+                .thenReturn(CompletableFuture.completedFuture(mock(SendResult.class)));
+        // cluster2 blocks inside send, as a producer does while its cluster's metadata is unavailable
+        CountDownLatch cluster2Unreachable = new CountDownLatch(1);
+        when(cluster2.send(anyString(), anyString(), any())).thenAnswer(invocation -> {
+            cluster2Unreachable.await(10, TimeUnit.SECONDS);
+            return CompletableFuture.completedFuture(mock(SendResult.class));
+        });
+
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        BhpubwrtProducer producer = new BhpubwrtProducer();
+        ReflectionTestUtils.setField(producer, "statusKafkaTemplate", primary);
+        ReflectionTestUtils.setField(producer, "statusKafkaTemplateCluster2", cluster2);
+        ReflectionTestUtils.setField(producer, "statusKafkaTemplateCluster3", cluster3);
+        ReflectionTestUtils.setField(producer, "meterRegistry", registry);
+
+        long start = System.nanoTime();
+        CompletableFuture<Void> first = producer.sendStatuses(List.of(new PayloadStatus("p1", true, 1, "cluster-1"),
+                new PayloadStatus("p2", true, 1, "cluster-1")));
+        producer.sendStatus(new PayloadStatus("p3", true, 1, "cluster-2"));
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1), "publishing must not wait for any cluster");
+        first.get(5, TimeUnit.SECONDS); // follows the primary, not the stuck cluster
+
+        verify(primary, timeout(5000)).send(eq("payload-status"), eq("p3"), any());
+        verify(cluster3, timeout(5000)).send(eq("payload-status"), eq("p3"), any());
+        verify(cluster2, timeout(5000).times(1)).send(anyString(), anyString(), any()); // stuck on p1
+
+        cluster2Unreachable.countDown();
+        verify(cluster2, timeout(5000)).send(eq("payload-status"), eq("p3"), any());
+        verify(primary, times(3)).send(anyString(), anyString(), any());
+
+        await().atMost(5, TimeUnit.SECONDS).untilAsserted(() -> {
+            assertEquals(3, registry.get("payload.status.send.latency").tag("target", "primary").timer().count());
+            assertEquals(3, registry.get("payload.status.send.latency").tag("target", "cluster3").timer().count());
+        });
+        assertEquals(3, registry.get("payload.status.published").counters().stream()
+                .mapToDouble(c -> c.count()).sum(), "counted once per status, not per cluster");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testFullQueueBlocksAndFailedPrimaryFailsTheFuture() throws Exception {
+        KafkaTemplate<String, PayloadStatus> primary = mock(KafkaTemplate.class);
+        CountDownLatch primaryStuck = new CountDownLatch(1);
+        when(primary.send(anyString(), anyString(), any())).thenAnswer(invocation -> {
+            primaryStuck.await(10, TimeUnit.SECONDS);
+            return CompletableFuture.failedFuture(new IllegalStateException("not leader"));
+        });
+        BhpubwrtProducer producer = new BhpubwrtProducer();
+        ReflectionTestUtils.setField(producer, "statusKafkaTemplate", primary);
+        ReflectionTestUtils.setField(producer, "maxQueuedPerCluster", 1);
+        ReflectionTestUtils.setField(producer, "meterRegistry", new SimpleMeterRegistry());
+
+        CompletableFuture<Void> running = producer.sendStatus(new PayloadStatus("p1", true, 1, "cluster-1"));
+        verify(primary, timeout(5000)).send(anyString(), eq("p1"), any());
+        producer.sendStatus(new PayloadStatus("p2", true, 1, "cluster-1")); // fills the queue
+        CompletableFuture<CompletableFuture<Void>> third = CompletableFuture.supplyAsync(
+                () -> producer.sendStatus(new PayloadStatus("p3", true, 1, "cluster-1")));
+        Thread.sleep(300);
+        assertFalse(third.isDone(), "waits for queue room instead of dropping the status");
+
+        primaryStuck.countDown();
+        CompletableFuture<Void> last = third.get(5, TimeUnit.SECONDS);
+        ExecutionException failed = assertThrows(ExecutionException.class, () -> running.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(IllegalStateException.class, failed.getCause());
+        assertThrows(ExecutionException.class, () -> last.get(5, TimeUnit.SECONDS));
+        verify(primary, timeout(5000)).send(anyString(), eq("p3"), any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testStuckSecondaryDoesNotHoldUpPrimaryCommits() throws Exception {
+        KafkaTemplate<String, PayloadStatus> primary = mock(KafkaTemplate.class);
+        KafkaTemplate<String, PayloadStatus> cluster2 = mock(KafkaTemplate.class);
+        when(primary.send(anyString(), anyString(), any()))
+                .thenReturn(CompletableFuture.completedFuture(mock(SendResult.class)));
+        // cluster2's send never returns, so its queue fills up and stays full
+        CountDownLatch cluster2Unreachable = new CountDownLatch(1);
+        when(cluster2.send(anyString(), anyString(), any())).thenAnswer(invocation -> {
+            cluster2Unreachable.await();
+            return new CompletableFuture<>();
+        });
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        BhpubwrtProducer producer = new BhpubwrtProducer();
+        ReflectionTestUtils.setField(producer, "statusKafkaTemplate", primary);
+        ReflectionTestUtils.setField(producer, "statusKafkaTemplateCluster2", cluster2);
+        ReflectionTestUtils.setField(producer, "maxQueuedPerCluster", 1);
+        ReflectionTestUtils.setField(producer, "meterRegistry", registry);
+
+        ExecutorService exec = Executors.newFixedThreadPool(2);
+        KafkaPayloadProcessor processor = new KafkaPayloadProcessor(exec, 2);
+        ReflectionTestUtils.setField(processor, "bhpubwrtProducer", producer);
+        AtomicInteger committed = new AtomicInteger();
+        try {
+            List<TSValues> records = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                TSValues r = new TSValues();
+                r.key = "key" + i;
+                r.value = "value" + i;
+                records.add(r);
+            }
+            // one at a time, so each status is its own publication
+            for (int p = 1; p <= 5; p++) {
+                processor.submitGroupedPayload("p" + p + "::cluster-1", GroupedTSValues.of(records),
+                        committed::incrementAndGet);
+                int expected = p;
+                await().atMost(5, TimeUnit.SECONDS).until(() -> committed.get() == expected);
+            }
+            verify(primary, times(5)).send(anyString(), anyString(), any());
+            // one stuck in send, one queued behind it, the rest dropped
+            assertEquals(3, registry.get("payload.status.send.dropped").tag("target", "cluster2").counter().count());
+        } finally {
+            cluster2Unreachable.countDown();
+            processor.shutdown();
+            exec.shutdownNow();
+        }
+    }
+}
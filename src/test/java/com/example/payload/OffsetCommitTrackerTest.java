@@ -0,0 +1,63 @@
+package com.example.payload;
+
+import com.example.payload.bhwrtam.OffsetCommitTracker;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.support.Acknowledgment;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class OffsetCommitTrackerTest {
+
+    private final List<String> committed = new ArrayList<>();
+
+    private Acknowledgment ack(String name) {
+        return () -> committed.add(name);
+    }
+
+    @Test
+    void testCommitsOnlyTheContiguousFinishedPrefix() {
+        OffsetCommitTracker tracker = new OffsetCommitTracker(true);
+        OffsetCommitTracker.Ticket t0 = tracker.register("cluster-1/payload-topic-0", 0, ack("0"), 1);
+        OffsetCommitTracker.Ticket t1 = tracker.register("cluster-1/payload-topic-0", 1, ack("1"), 1);
+        OffsetCommitTracker.Ticket t2 = tracker.register("cluster-1/payload-topic-0", 2, ack("2"), 1);
+        OffsetCommitTracker.Ticket other = tracker.register("cluster-1/payload-topic-1", 0, ack("p1-0"), 1);
+
+        t2.complete();
+        t1.complete();
+        assertEquals(List.of(), committed, "offset 0 is still in flight");
+        other.complete();
+        assertEquals(List.of("p1-0"), committed, "partitions are independent");
+        t0.complete();
+        assertEquals(List.of("p1-0", "0", "1", "2"), committed);
+        assertEquals(0, tracker.pending());
+    }
+
+    @Test
+    void testMultiPartTicketsAndEmptyPolls() {
+        OffsetCommitTracker tracker = new OffsetCommitTracker(true);
+        OffsetCommitTracker.Ticket poll0 = tracker.register("cluster-1", 0, ack("poll0"), 2);
+        tracker.register("cluster-1", 1, ack("poll1"), 0);
+        poll0.complete();
+        assertEquals(List.of(), committed);
+        poll0.complete();
+        assertEquals(List.of("poll0", "poll1"), committed);
+    }
+
+    @Test
+    void testRewindDropsUnfinishedDeliveries() {
+        OffsetCommitTracker tracker = new OffsetCommitTracker(true);
+        OffsetCommitTracker.Ticket stale = tracker.register("s", 5, ack("5-old"), 1);
+        tracker.register("s", 6, ack("6-old"), 1);
+
+        // After a rebalance the partition is redelivered from the last commit
+        OffsetCommitTracker.Ticket again = tracker.register("s", 5, ack("5"), 1);
+        stale.complete();
+        assertEquals(List.of(), committed, "the abandoned delivery must not commit");
+        again.complete();
+        assertEquals(List.of("5"), committed);
+        assertEquals(0, tracker.pending());
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.payload;
+
+import com.example.payload.bhwrtam.RingBufferLane;
+import com.example.payload.bhwrtam.SubBatch;
+import com.example.payload.bhwrtam.WaitStrategy;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RingBufferLaneTest {
+
+    @Test
+    void testFifoAndCapacityRounding() {
+        RingBufferLane lane = new RingBufferLane(100, true, WaitStrategy.PARK);
+        assertEquals(128, lane.capacity());
+        for (int i = 0; i < 128; i++) {
+            assertTrue(lane.offer(batch(i)));
+        }
+        assertFalse(lane.offer(batch(128)), "Full ring must reject");
+        assertEquals(128, lane.size());
+        for (int i = 0; i < 128; i++) {
+            assertEquals(i, lane.poll().index);
+        }
+        assertNull(lane.poll());
+        assertEquals(0, lane.size());
+    }
+
+    @Test
+    void testTimedPollReturnsNullWhenEmpty() throws InterruptedException {
+        for (WaitStrategy strategy : WaitStrategy.values()) {
+            RingBufferLane lane = new RingBufferLane(4, false, strategy);
+            long start = System.nanoTime();
+            assertNull(lane.poll(20, TimeUnit.MILLISECONDS));
+            assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(20), strategy.name());
+        }
+    }
+
+    @Test
+    void testMultiProducerMultiConsumerDeliversEachBatchOnce() throws InterruptedException {
+        for (WaitStrategy strategy : List.of(WaitStrategy.BLOCK, WaitStrategy.YIELD)) {
+            RingBufferLane lane = new RingBufferLane(16, false, strategy);
+            int producers = 4;
+            int perProducer = 20_000;
+            Set<Integer> seen = ConcurrentHashMap.newKeySet();
+            AtomicInteger consumed = new AtomicInteger();
+            ExecutorService exec = Executors.newFixedThreadPool(producers + 3);
+            try {
+                for (int p = 0; p < producers; p++) {
+                    int base = p * perProducer;
+                    exec.submit(() -> {
+                        for (int i = 0; i < perProducer; i++) {
+                            lane.put(batch(base + i));
+                        }
+                        return null;
+                    });
+                }
+                for (int c = 0; c < 3; c++) {
+                    exec.submit(() -> {
+                        while (consumed.get() < producers * perProducer) {
+                            SubBatch b = lane.poll(10, TimeUnit.MILLISECONDS);
+                            if (b != null) {
+                                assertTrue(seen.add(b.index), "Duplicate delivery " + b.index);
+                                consumed.incrementAndGet();
+                            }
+                        }
+                        return null;
+                    });
+                }
+                exec.shutdown();
+                assertTrue(exec.awaitTermination(30, TimeUnit.SECONDS), strategy.name());
+            } finally {
+                exec.shutdownNow();
+            }
+            assertEquals(producers * perProducer, seen.size());
+        }
+    }
+
+    private static SubBatch batch(int index) {
+        return new SubBatch("payload", index, "key", List.of());
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.payload;
+
+import com.example.payload.bhpubwrt.BhpubwrtProducer;
+import com.example.payload.bhpubwrt.PayloadStatus;
+import com.example.payload.bhpubwrt.PayloadStatusDeserializer;
+import org.apache.kafka.common.errors.SerializationException;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class StatusBatchingTest {
+
+    private final PayloadStatusDeserializer deserializer = new PayloadStatusDeserializer();
+
+    @Test
+    void testDecodesSingleStatusesAndBatches() {
+        try (JsonSerializer<Object> serializer = new JsonSerializer<>()) {
+            PayloadStatus one = new PayloadStatus("p1", true, 10, "cluster-1");
+            List<PayloadStatus> single = deserializer.deserialize("payload-status", serializer.serialize("payload-status", one));
+            assertEquals(1, single.size());
+            assertEquals("p1", single.get(0).payloadId);
+            assertEquals(one.completedAt, single.get(0).completedAt);
+
+            PayloadStatus[] batch = {one, new PayloadStatus("p2", false, 3, "cluster-2")};
+            List<PayloadStatus> decoded = deserializer.deserialize("payload-status", serializer.serialize("payload-status", batch));
+            assertEquals(2, decoded.size());
+            assertEquals("p2", decoded.get(1).payloadId);
+            assertFalse(decoded.get(1).success);
+            assertEquals("cluster-2", decoded.get(1).clusterId);
+        }
+        assertEquals(List.of(), deserializer.deserialize("payload-status", "[]".getBytes(StandardCharsets.UTF_8)));
+        assertNull(deserializer.deserialize("payload-status", null));
+        assertThrows(SerializationException.class,
+                () -> deserializer.deserialize("payload-status", "42".getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testBatchedModeSendsOneRecordPerChunk() {
+        KafkaTemplate<String, PayloadStatus> single = mock(KafkaTemplate.class);
+        KafkaTemplate<String, PayloadStatus[]> batched = mock(KafkaTemplate.class);
+        when(single.send(anyString(), anyString(), any())).thenReturn(new CompletableFuture<>());
+        when(batched.send(anyString(), any())).thenReturn(new CompletableFuture<>());
+        BhpubwrtProducer producer = new BhpubwrtProducer();
+        ReflectionTestUtils.setField(producer, "statusKafkaTemplate", single);
+        ReflectionTestUtils.setField(producer, "statusBatchKafkaTemplate", batched);
+        ReflectionTestUtils.setField(producer, "batchedStatuses", true);
+        ReflectionTestUtils.setField(producer, "maxStatusesPerRecord", 4);
+
+        List<PayloadStatus> statuses = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            statuses.add(new PayloadStatus("p" + i, true, 1, "cluster-1"));
+        }
+        producer.sendStatuses(statuses);
+
+        ArgumentCaptor<PayloadStatus[]> records = ArgumentCaptor.forClass(PayloadStatus[].class);
+        verify(batched, timeout(5000).times(3)).send(eq("payload-status"), records.capture());
+        assertEquals(List.of(4, 4, 2), records.getAllValues().stream().map(r -> r.length).toList());
+        assertEquals("p9", records.getAllValues().get(2)[1].payloadId);
+        verify(single, never()).send(anyString(), anyString(), any());
+
+        producer.sendStatuses(List.of(new PayloadStatus("lone", true, 1, "cluster-1")));
+        verify(single, timeout(5000)).send(eq("payload-status"), eq("lone"), any(PayloadStatus.class));
+    }
+}
@@ -0,0 +1,149 @@
+package com.example.payload;
+
+import com.example.payload.bhwrtam.StatusTracker;
+import com.example.payload.bhwrtam.SubBatchStatus;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StatusTrackerTest {
+
+    @Test
+    void testEmitsExactlyOnceUnderContention() throws InterruptedException {
+        List<String> completed = new CopyOnWriteArrayList<>();
+        StatusTracker tracker = new StatusTracker(completed::add);
+
+        int payloads = 50;
+        int batches = 200;
+        for (int p = 0; p < payloads; p++) {
+            tracker.init("payload-" + p, batches);
+        }
+        ExecutorService exec = Executors.newFixedThreadPool(8);
+        CountDownLatch done = new CountDownLatch(payloads * batches);
+        try {
+            for (int p = 0; p < payloads; p++) {
+                for (int i = 0; i < batches; i++) {
+                    String id = "payload-" + p;
+                    int index = i;
+                    exec.submit(() -> {
+                        tracker.update(id, index, SubBatchStatus.SUCCESS);
+                        done.countDown();
+                    });
+                }
+            }
+            assertTrue(done.await(10, TimeUnit.SECONDS));
+        } finally {
+            exec.shutdownNow();
+        }
+
+        assertEquals(payloads, completed.size(), "Each payload must complete exactly once");
+        assertEquals(payloads, completed.stream().distinct().count());
+        completed.forEach(id -> assertTrue(tracker.isSuccessful(id)));
+    }
+
+    @Test
+    void testFailureAndPartialCompletion() {
+        List<String> completed = new CopyOnWriteArrayList<>();
+        StatusTracker tracker = new StatusTracker(completed::add);
+
+        tracker.init("p", 3);
+        tracker.update("p", 0, SubBatchStatus.SUCCESS);
+        tracker.update("p", 1, SubBatchStatus.FAILURE);
+        assertFalse(tracker.isSuccessful("p"), "Incomplete payload is not successful");
+        assertTrue(completed.isEmpty());
+
+        tracker.update("p", 2, SubBatchStatus.SUCCESS);
+        assertEquals(List.of("p"), completed);
+        assertFalse(tracker.isSuccessful("p"));
+
+        tracker.remove("p");
+        tracker.update("p", 2, SubBatchStatus.SUCCESS); // late update after cleanup is ignored
+        assertEquals(1, completed.size());
+    }
+
+    @Test
+    void testOpenPayloadCompletesOnlyOnceSealed() {
+        List<String> completed = new CopyOnWriteArrayList<>();
+        StatusTracker tracker = new StatusTracker(completed::add);
+
+        tracker.open("chunked");
+        tracker.extend("chunked", 2);
+        tracker.update("chunked", 0, SubBatchStatus.SUCCESS);
+        tracker.update("chunked", 1, SubBatchStatus.SUCCESS);
+        assertTrue(completed.isEmpty(), "more chunks may follow");
+
+        tracker.extend("chunked", 1);
+        tracker.seal("chunked");
+        assertTrue(completed.isEmpty());
+        tracker.update("chunked", 2, SubBatchStatus.SUCCESS);
+        assertEquals(List.of("chunked"), completed);
+        assertTrue(tracker.isSuccessful("chunked"));
+
+        tracker.open("abandoned");
+        tracker.extend("abandoned", 1);
+        tracker.abort("abandoned");
+        tracker.update("abandoned", 0, SubBatchStatus.SUCCESS);
+        assertEquals(List.of("chunked", "abandoned"), completed);
+        assertFalse(tracker.isSuccessful("abandoned"));
+    }
+
+    @Test
+    void testDuplicateUpdatesCountOnce() {
+        List<String> completed = new CopyOnWriteArrayList<>();
+        StatusTracker tracker = new StatusTracker(completed::add);
+
+        tracker.init("p", 3);
+        tracker.update("p", 0, SubBatchStatus.SUCCESS);
+        tracker.update("p", 0, SubBatchStatus.SUCCESS);
+        tracker.update("p", 1, SubBatchStatus.SUCCESS);
+        tracker.update("p", 1, SubBatchStatus.FAILURE);
+        assertTrue(completed.isEmpty(), "index 2 is still running");
+        tracker.update("p", 2, SubBatchStatus.SUCCESS);
+        assertEquals(List.of("p"), completed);
+        assertTrue(tracker.isSuccessful("p"), "the repeated failure of index 1 is ignored");
+
+        tracker.open("chunked");
+        tracker.extend("chunked", 70);
+        for (int i = 0; i < 70; i++) {
+            tracker.update("chunked", i, SubBatchStatus.SUCCESS);
+            tracker.update("chunked", i, SubBatchStatus.SUCCESS);
+        }
+        tracker.extend("chunked", 1);
+        tracker.update("chunked", 69, SubBatchStatus.SUCCESS);
+        tracker.seal("chunked");
+        assertEquals(List.of("p"), completed);
+        tracker.update("chunked", 70, SubBatchStatus.SUCCESS);
+        assertEquals(List.of("p", "chunked"), completed);
+    }
+
+    @Test
+    void testUpdatesFromASupersededAttemptAreIgnored() {
+        List<String> completed = new CopyOnWriteArrayList<>();
+        StatusTracker tracker = new StatusTracker(completed::add);
+
+        int first = tracker.nextAttempt();
+        tracker.open("chunked", first);
+        tracker.extend("chunked", 2);
+        tracker.update("chunked", first, 0, SubBatchStatus.SUCCESS);
+
+        // chunk 0 is redelivered: the payload starts over while the first attempt still runs
+        int second = tracker.nextAttempt();
+        tracker.open("chunked", second);
+        tracker.extend("chunked", 1);
+        tracker.seal("chunked");
+        tracker.update("chunked", first, 1, SubBatchStatus.FAILURE);
+        tracker.update("chunked", first, 0, SubBatchStatus.FAILURE);
+        assertTrue(completed.isEmpty(), "the first attempt's sub-batches do not count");
+
+        tracker.update("chunked", second, 0, SubBatchStatus.SUCCESS);
+        assertEquals(List.of("chunked"), completed);
+        assertTrue(tracker.isSuccessful("chunked"));
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.payload;
+
+import com.example.payload.common.GroupedTSValues;
+import com.example.payload.common.StreamingTSValuesDeserializer;
+import com.example.payload.common.TSValues;
+import org.apache.kafka.common.errors.SerializationException;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StreamingTSValuesDeserializerTest {
+
+    private final StreamingTSValuesDeserializer deserializer = new StreamingTSValuesDeserializer();
+
+    @Test
+    void testGroupsRecordsByKeyWhileParsing() {
+        TSValues[] array = new TSValues[100];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = new TSValues();
+            array[i].key = "key" + (i % 10);
+            array[i].value = "value" + i;
+        }
+        byte[] data;
+        try (JsonSerializer<TSValues[]> serializer = new JsonSerializer<>()) {
+            data = serializer.serialize("payload-topic", array);
+        }
+
+        GroupedTSValues grouped = deserializer.deserialize("payload-topic", data);
+
+        assertEquals(100, grouped.recordCount());
+        assertEquals(10, grouped.keyCount());
+        List<TSValues> key3 = grouped.get("key3");
+        assertEquals(10, key3.size());
+        assertEquals("value3", key3.get(0).value);
+        assertEquals("value93", key3.get(9).value);
+    }
+
+    @Test
+    void testSkipsUnknownFieldsAndNullEntries() {
+        String json = "[{\"key\":\"a\",\"extra\":{\"nested\":[1,2]},\"value\":\"1\"},null,{\"value\":null,\"key\":\"a\"}]";
+        GroupedTSValues grouped = deserializer.deserialize("payload-topic", json.getBytes(StandardCharsets.UTF_8));
+
+        assertEquals(2, grouped.recordCount());
+        assertEquals("1", grouped.get("a").get(0).value);
+        assertNull(grouped.get("a").get(1).value);
+    }
+
+    @Test
+    void testRejectsMalformedPayloads() {
+        assertNull(deserializer.deserialize("payload-topic", null));
+        assertThrows(SerializationException.class,
+                () -> deserializer.deserialize("payload-topic", "{\"key\":\"a\"}".getBytes(StandardCharsets.UTF_8)));
+        assertThrows(SerializationException.class,
+                () -> deserializer.deserialize("payload-topic", "[{\"value\":\"x\"}]".getBytes(StandardCharsets.UTF_8)));
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.payload;
+
+import com.example.payload.bhwrtam.SubBatch;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.BeanUtils;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.ReflectionUtils;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class VirtualThreadSubBatchExecutorTest {
+
+    @Test
+    void testSubBatchAfterAFailedOneOnTheSameKeyStillRuns() throws Exception {
+        List<Integer> ran = new CopyOnWriteArrayList<>();
+        CountDownLatch submitted = new CountDownLatch(1);
+        // sub-batch 0 fails only once the others are chained behind it
+        Consumer<SubBatch> task = batch -> {
+            ran.add(batch.index);
+            if (batch.index == 0) {
+                awaitQuietly(submitted);
+                throw new IllegalStateException("sub-batch 0 fails");
+            }
+        };
+        // platform threads stand in for virtual ones, so this also runs on Java 17
+        ExecutorService exec = Executors.newFixedThreadPool(2);
+        Object executor = newExecutor(exec, 4, 16, task);
+        try {
+            for (int i = 0; i < 3; i++) {
+                ReflectionTestUtils.invokeMethod(executor, "submit", new SubBatch("p", i, "same-key", List.of()));
+            }
+            submitted.countDown();
+            await().atMost(5, TimeUnit.SECONDS).until(() -> ran.size() == 3);
+            assertEquals(List.of(0, 1, 2), ran);
+            await().atMost(5, TimeUnit.SECONDS)
+                    .until(() -> (int) ReflectionTestUtils.invokeMethod(executor, "inFlight") == 0);
+        } finally {
+            exec.shutdownNow();
+        }
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // The executor is package-private to the processor.
+    private static Object newExecutor(ExecutorService exec, int maxInFlight, int maxQueued, Consumer<SubBatch> task)
+            throws ReflectiveOperationException {
+        Class<?> type = ClassUtils.forName("com.example.payload.bhwrtam.VirtualThreadSubBatchExecutor", null);
+        return BeanUtils.instantiateClass(ReflectionUtils.accessibleConstructor(type,
+                ExecutorService.class, int.class, int.class, Consumer.class), exec, maxInFlight, maxQueued, task);
+    }
+}